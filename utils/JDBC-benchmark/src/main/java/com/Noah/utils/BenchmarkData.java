@@ -0,0 +1,187 @@
+package com.Noah.utils;
+
+import lombok.Data;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 基准测试数据
+ * <p>
+ * 每行5列:用户名、角色、姓名为字符串(姓名为中文,少量带空白),金额、数量为数值。
+ * 生成的文件缓存在临时目录的jdbc-benchmark下,同一行数只生成一次,各fork共用。
+ */
+public class BenchmarkData {
+
+    public static final String[] COLUMN_NAME = {"user_code", "role_code", "name", "amount", "quantity"};
+
+    public static final String[] COLUMN_ALIGN_NAME = {"用户名", "角色", "姓名", "金额", "数量"};
+
+    //xls每个sheet最多65536行
+    public static final int XLS_MAX_ROWS = 65535;
+
+    private static final File DIR = new File(System.getProperty("java.io.tmpdir"), "jdbc-benchmark");
+
+    /**
+     * 丢弃写入内容的输出流,导出基准只计生成与序列化的开销
+     */
+    public static final OutputStream NULL_OUTPUT = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Data
+    public static class UserRow {
+
+        private String userCode;
+
+        private String roleCode;
+
+        private String name;
+
+        private double amount;
+
+        private int quantity;
+    }
+
+    /**
+     * 含标题行和rows行数据的xlsx文件
+     */
+    public static synchronized File xlsx(int rows) throws IOException {
+        File file = new File(DIR, "rows-" + rows + ".xlsx");
+        if (!file.exists()) {
+            SXSSFWorkbook workbook = new SXSSFWorkbook();
+            try {
+                fill(workbook, rows);
+                write(workbook, file);
+            } finally {
+                workbook.dispose();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * 含标题行和rows行数据的xls文件,rows不超过XLS_MAX_ROWS
+     */
+    public static synchronized File xls(int rows) throws IOException {
+        if (rows > XLS_MAX_ROWS) throw new IllegalArgumentException("xls最多" + XLS_MAX_ROWS + "行数据");
+        File file = new File(DIR, "rows-" + rows + ".xls");
+        if (!file.exists()) {
+            HSSFWorkbook workbook = new HSSFWorkbook();
+            fill(workbook, rows);
+            write(workbook, file);
+        }
+        return file;
+    }
+
+    /**
+     * 导出用的Map数据,值均为字符串
+     */
+    public static List<Map<String, Object>> maps(int rows) {
+        List<Map<String, Object>> list = new ArrayList<>(rows);
+        Random random = new Random(42);
+        for (int i = 0; i < rows; i++) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("user_code", userCode(i));
+            map.put("role_code", roleCode(i));
+            map.put("name", name(i));
+            map.put("amount", String.valueOf(amount(random)));
+            map.put("quantity", String.valueOf(quantity(random)));
+            list.add(map);
+        }
+        return list;
+    }
+
+    /**
+     * 导出用的bean数据,属性名与COLUMN_NAME对应
+     */
+    public static List<UserRow> beans(int rows) {
+        List<UserRow> list = new ArrayList<>(rows);
+        Random random = new Random(42);
+        for (int i = 0; i < rows; i++) {
+            UserRow bean = new UserRow();
+            bean.setUserCode(userCode(i));
+            bean.setRoleCode(roleCode(i));
+            bean.setName(name(i));
+            bean.setAmount(amount(random));
+            bean.setQuantity(quantity(random));
+            list.add(bean);
+        }
+        return list;
+    }
+
+    /**
+     * 导出bean时的列,即bean的属性名
+     */
+    public static String[] beanColumnName() {
+        return new String[]{"userCode", "roleCode", "name", "amount", "quantity"};
+    }
+
+    private static void fill(Workbook workbook, int rows) {
+        Sheet sheet = workbook.createSheet();
+        Row header = sheet.createRow(0);
+        for (int j = 0; j < COLUMN_ALIGN_NAME.length; j++) {
+            header.createCell(j).setCellValue(COLUMN_ALIGN_NAME[j]);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < rows; i++) {
+            Row row = sheet.createRow(i + 1);
+            row.createCell(0).setCellValue(userCode(i));
+            row.createCell(1).setCellValue(roleCode(i));
+            row.createCell(2).setCellValue(name(i));
+            row.createCell(3).setCellValue(amount(random));
+            row.createCell(4).setCellValue(quantity(random));
+        }
+    }
+
+    /**
+     * 先写临时文件再改名,中断的生成不会留下不完整的文件
+     */
+    private static void write(Workbook workbook, File file) throws IOException {
+        if (!DIR.exists() && !DIR.mkdirs()) throw new IOException("无法创建目录" + DIR);
+        File tmp = new File(DIR, file.getName() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            workbook.write(out);
+        }
+        if (!tmp.renameTo(file)) throw new IOException("无法生成" + file);
+    }
+
+    private static String userCode(int i) {
+        return "user_" + i;
+    }
+
+    private static String roleCode(int i) {
+        return "role_" + (i % 40);
+    }
+
+    private static String name(int i) {
+        //少量带空白的脏数据
+        return i % 10 == 0 ? " 张 三\t" + i : "张三" + i;
+    }
+
+    private static double amount(Random random) {
+        return random.nextInt(1000000) / 100d;
+    }
+
+    private static int quantity(Random random) {
+        return random.nextInt(1000);
+    }
+}
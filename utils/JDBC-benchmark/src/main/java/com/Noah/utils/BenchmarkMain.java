@@ -0,0 +1,25 @@
+package com.Noah.utils;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口,参数与JMH命令行相同,默认附加gc profiler报告分配速率(gc.alloc.rate)与每次操作分配的字节数(gc.alloc.rate.norm)
+ * <p>
+ * 运行:在JDBC模块执行mvn install,再在本模块执行mvn package,然后
+ * java -jar target/benchmarks.jar [正则] [-p rows=10000] ...
+ * <p>
+ * 吞吐量中rows一项为每秒处理的行数;生成的测试文件缓存在临时目录的jdbc-benchmark下。
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        ChainedOptionsBuilder builder = new OptionsBuilder()
+                .parent(new CommandLineOptions(args));
+        builder.addProfiler(GCProfiler.class);
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,120 @@
+package com.Noah.utils;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * getCellValue解码,每次解码sheet中的全部单元格,结果中rows为每秒解码的行数
+ * <p>
+ * 只计解码,不含文件解析;sheet在setup中以用户模型载入内存。decodeLegacy为优化前的实现
+ * (每个单元格编译正则、新建DecimalFormat),与decode对比加速比;rows=200000即100万个单元格。
+ * xls每个sheet最多XLS_MAX_ROWS行,超出时循环使用已载入的行,解码的单元格数不变。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class GetCellValueBenchmark {
+
+    @Param({"xls", "xlsx"})
+    public String ext;
+
+    @Param({"10000", "200000"})
+    public int rows;
+
+    private Cell[] cells;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        int fileRows = "xls".equals(ext) ? Math.min(rows, BenchmarkData.XLS_MAX_ROWS) : rows;
+        File file = "xls".equals(ext) ? BenchmarkData.xls(fileRows) : BenchmarkData.xlsx(fileRows);
+        Workbook workbook = WorkbookFactory.create(file);
+        Sheet sheet = workbook.getSheetAt(0);
+        List<Cell> list = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            Row row = sheet.getRow(i % fileRows + 1);
+            for (int j = 0; j < BenchmarkData.COLUMN_NAME.length; j++) {
+                list.add(row.getCell(j));
+            }
+        }
+        cells = list.toArray(new Cell[0]);
+    }
+
+    @Benchmark
+    public void decode(RowCounter counter, Blackhole bh) throws Exception {
+        for (Cell cell : cells) {
+            bh.consume(ExcelTools.getCellValue(cell));
+        }
+        counter.rows += rows;
+    }
+
+    @Benchmark
+    public void decodeLegacy(RowCounter counter, Blackhole bh) {
+        for (Cell cell : cells) {
+            bh.consume(legacyCellValue(cell));
+        }
+        counter.rows += rows;
+    }
+
+    /**
+     * 优化前的getCellValue实现,与JDBC模块CellValueTest中的相同
+     */
+    private static String legacyCellValue(Cell cell) {
+        Object result = "";
+        if (cell != null) {
+            switch (cell.getCellType()) {
+                case Cell.CELL_TYPE_STRING:
+                    result = cell.getStringCellValue();
+                    break;
+                case Cell.CELL_TYPE_NUMERIC:
+                    result = new DecimalFormat("0").format(cell.getNumericCellValue());
+                    break;
+                case Cell.CELL_TYPE_BOOLEAN:
+                    result = cell.getBooleanCellValue();
+                    break;
+                case Cell.CELL_TYPE_FORMULA:
+                    result = cell.getCellFormula();
+                    break;
+                case Cell.CELL_TYPE_ERROR:
+                    result = cell.getErrorCellValue();
+                    break;
+                case Cell.CELL_TYPE_BLANK:
+                    break;
+                default:
+                    result = cell.toString();
+                    break;
+            }
+        }
+        String reString = result.toString();
+        Pattern p = Pattern.compile("\\s*|\t|\r|\n");
+        Matcher m = p.matcher(reString);
+        reString = m.replaceAll("").trim();
+        return reString;
+    }
+}
@@ -0,0 +1,100 @@
+package com.Noah.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 由xlsx导入数据库,读取、写入与报告生成全程
+ * <p>
+ * 以MySQL兼容模式的H2内存库代替MySQL,只反映客户端一侧的开销与并行写入的效果,
+ * 不能代替对真实MySQL的测试。每次导入前清空表。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ImportBenchmark {
+
+    private static final String URL = "jdbc:h2:mem:benchmark;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    private static final String INSERT_SQL = "insert into auth_contact_user_role(user_code, role_code) values(?, ?)";
+
+    private static final String[] REPORT_COLUMN = {"user_code", "role_code", ImportPipeline.SUCCESS_COLUMN};
+
+    private static final String[] REPORT_COLUMN_ALIGN = {"用户名", "角色", "success"};
+
+    private static final int CHUNK_SIZE = 5000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    //1为单连接顺序写入
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private File file;
+
+    private ConnectionPool pool;
+
+    private ImportPipeline pipeline;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        file = BenchmarkData.xlsx(rows);
+        pool = new ConnectionPool(URL, "sa", "", parallelism + 1, ConnectionPool.DEFAULT_BORROW_TIMEOUT,
+                ConnectionPool.DEFAULT_IDLE_TIMEOUT, ConnectionPool.DEFAULT_STATEMENT_CACHE_SIZE);
+        execute("create table if not exists auth_contact_user_role(user_code varchar(64), role_code varchar(64))");
+        pipeline = new ImportPipeline(pool, INSERT_SQL, BatchInserter.DEFAULT_BATCH_SIZE, CHUNK_SIZE,
+                ImportPipeline.DEFAULT_QUEUE_CAPACITY, parallelism);
+    }
+
+    @Setup(Level.Invocation)
+    public void truncate() throws SQLException {
+        execute("truncate table auth_contact_user_role");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        execute("drop table auth_contact_user_role");
+        pool.close();
+    }
+
+    @Benchmark
+    public ImportPipeline.PipelineResult importXlsx(RowCounter counter) {
+        ImportPipeline.PipelineResult result = pipeline.run(file, "xlsx", null, 0, BenchmarkData.COLUMN_NAME,
+                (rowNum, row) -> new Object[]{row.get("user_code"), row.get("role_code")},
+                REPORT_COLUMN, REPORT_COLUMN_ALIGN, BenchmarkData.NULL_OUTPUT);
+        if (result == null || result.getSuccessCount() != rows) {
+            throw new IllegalStateException("导入失败: " + result);
+        }
+        counter.rows += result.getReadCount();
+        return result;
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection conn = pool.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+            if (!conn.getAutoCommit()) conn.commit();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.Noah.utils;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * xls读取与导出
+ * <p>
+ * xls每个sheet最多65536行,行数取10000与60000;百万行的对比见XlsxBenchmark。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class XlsBenchmark {
+
+    @Param({"10000", "60000"})
+    public int rows;
+
+    private File file;
+
+    private List<Map<String, Object>> maps;
+
+    private List<BenchmarkData.UserRow> beans;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        file = BenchmarkData.xls(rows);
+        maps = BenchmarkData.maps(rows);
+        beans = BenchmarkData.beans(rows);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> readList(RowCounter counter) {
+        List<Map<String, Object>> list = ExcelTools.readExcel(file, "xls", 0, BenchmarkData.COLUMN_NAME);
+        counter.rows += list.size();
+        return list;
+    }
+
+    @Benchmark
+    public void readStreaming(RowCounter counter, Blackhole bh) {
+        counter.rows += ExcelTools.readExcel(file, "xls", null, 0, BenchmarkData.COLUMN_NAME, (rowNum, row) -> bh.consume(row));
+    }
+
+    @Benchmark
+    public HSSFWorkbook getHSSFWookbook(RowCounter counter) {
+        counter.rows += rows;
+        return ExcelTools.getHSSFWookbook(maps, BenchmarkData.COLUMN_NAME, BenchmarkData.COLUMN_ALIGN_NAME);
+    }
+
+    @Benchmark
+    public HSSFWorkbook getHSSFWookbookByBean(RowCounter counter) {
+        counter.rows += rows;
+        return ExcelTools.getHSSFWookbookByBean(beans, BenchmarkData.beanColumnName(), BenchmarkData.COLUMN_ALIGN_NAME);
+    }
+}
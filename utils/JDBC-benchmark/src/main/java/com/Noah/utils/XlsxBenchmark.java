@@ -0,0 +1,81 @@
+package com.Noah.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * xlsx读取与流式导出
+ * <p>
+ * 内存中构建整个XSSFWorkbook的导出在百万行时需要数GB堆,单独放在XssfWorkbookBenchmark。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class XlsxBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private File file;
+
+    private List<Map<String, Object>> maps;
+
+    private List<BenchmarkData.UserRow> beans;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        file = BenchmarkData.xlsx(rows);
+        maps = BenchmarkData.maps(rows);
+        beans = BenchmarkData.beans(rows);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> readList(RowCounter counter) {
+        List<Map<String, Object>> list = ExcelTools.readExcel(file, "xlsx", 0, BenchmarkData.COLUMN_NAME);
+        counter.rows += list.size();
+        return list;
+    }
+
+    @Benchmark
+    public void readStreaming(RowCounter counter, Blackhole bh) {
+        counter.rows += ExcelTools.readExcel(file, "xlsx", null, 0, BenchmarkData.COLUMN_NAME, (rowNum, row) -> bh.consume(row));
+    }
+
+    @Benchmark
+    public void readValues(RowCounter counter, Blackhole bh) {
+        counter.rows += ExcelTools.readExcelValues(file, "xlsx", null, 0, BenchmarkData.COLUMN_NAME, (rowNum, values) -> bh.consume(values));
+    }
+
+    @Benchmark
+    public boolean writeStreaming(RowCounter counter) {
+        counter.rows += rows;
+        return ExcelTools.writeXSSFWookbook(maps.iterator(), BenchmarkData.COLUMN_NAME, BenchmarkData.COLUMN_ALIGN_NAME,
+                null, BenchmarkData.NULL_OUTPUT);
+    }
+
+    @Benchmark
+    public boolean writeStreamingByBean(RowCounter counter) {
+        counter.rows += rows;
+        return ExcelTools.writeXSSFWookbookByBean(beans.iterator(), BenchmarkData.beanColumnName(), BenchmarkData.COLUMN_ALIGN_NAME,
+                null, BenchmarkData.NULL_OUTPUT);
+    }
+}
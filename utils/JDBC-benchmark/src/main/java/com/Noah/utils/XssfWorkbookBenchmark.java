@@ -0,0 +1,58 @@
+package com.Noah.utils;
+
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在内存中构建XSSFWorkbook的导出
+ * <p>
+ * 每个单元格都是XmlBeans对象,百万行超出常用堆大小,行数取10000与100000。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class XssfWorkbookBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    private List<Map<String, Object>> maps;
+
+    private List<BenchmarkData.UserRow> beans;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        maps = BenchmarkData.maps(rows);
+        beans = BenchmarkData.beans(rows);
+    }
+
+    @Benchmark
+    public XSSFWorkbook getXSSFWookbook(RowCounter counter) {
+        counter.rows += rows;
+        return ExcelTools.getXSSFWookbook(maps, BenchmarkData.COLUMN_NAME, BenchmarkData.COLUMN_ALIGN_NAME);
+    }
+
+    @Benchmark
+    public XSSFWorkbook getXSSFWookbookByBean(RowCounter counter) {
+        counter.rows += rows;
+        return ExcelTools.getXSSFWookbookByBean(beans, BenchmarkData.beanColumnName(), BenchmarkData.COLUMN_ALIGN_NAME);
+    }
+}
@@ -1,127 +1,127 @@
 package com.Noah.main;
 
+import com.Noah.utils.BatchInserter;
+import com.Noah.utils.ConnectionPool;
+import com.Noah.utils.ExcelMetrics;
 import com.Noah.utils.ExcelTools;
+import com.Noah.utils.ImportPipeline;
+import com.Noah.utils.PairSet;
+import com.Noah.utils.ReferenceCache;
 import java.io.File;
-import java.sql.*;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 public class Main {
-    public static void main(String[] args) throws ClassNotFoundException {
-        List<Map<String, Object>> list = ExcelTools.readExcel(
-                new File("C:\\Users\\taobi\\Desktop\\工作簿(2).xlsx"),
-                "xlsx",
-                null,
-                new String[]{"用户名", "角色"});
-        int count = 0;
-        List<String> check = new ArrayList<>();
-        List<String> names = getName();
-        List<String> nonexist = new ArrayList<>();
-        Map<String,String> userCode = getUserCode();
-        Map<String,String> roleCode = getRoleCode();
-        try {
-            Class.forName("com.mysql.jdbc.Driver");
-            String url="jdbc:mysql://172.20.62.80:3307/auth_server";
-            String username="root";
-            String userpwd="abc123456";
-            Connection conn = DriverManager.getConnection(url,username,userpwd);
 
-            conn.setAutoCommit(false);
-            PreparedStatement ps = conn.prepareStatement("insert into auth_contact_user_role (user_code, role_code) values(?,? )");
+    private static final String URL = "jdbc:mysql://172.20.62.80:3307/auth_server";
 
+    private static final String USERNAME = "root";
 
-            for (Map<String, Object> map : list) {
-                if (list.contains(map.get("用户名").toString()+ map.get("角色").toString()))
-                    continue;
-                if (!names.contains(map.get("用户名").toString())){
-                    if (!nonexist.contains(map.get("用户名")))
-                        nonexist.add(map.get("用户名").toString());
-                    continue;
-                }
-                check.add(map.get("用户名").toString()+ map.get("角色").toString());
-                ps.setString(1,userCode.get(map.get("用户名")));
-                ps.setString(2,roleCode.get(map.get("角色")));
-                ps.executeUpdate();
-                System.out.println(count++);
-            }
-            conn.commit();
-            ps.close();
-            conn.close();
+    private static final String USERPWD = "abc123456";
+
+    //参照数据最多缓存的条数与过期时间
+    private static final int REFERENCE_MAX_SIZE = 500000;
+
+    private static final long REFERENCE_TTL = 10 * 60 * 1000L;
+
+    //并行写入的连接数与每块(事务)的行数
+    private static final int PARALLELISM = 4;
+
+    private static final int CHUNK_SIZE = 5000;
+
+    //所有数据库访问都从连接池获取连接
+    private static final ConnectionPool POOL = new ConnectionPool(
+            BatchInserter.rewriteBatchedStatements(URL), USERNAME, USERPWD);
+
+    public static void main(String[] args) {
+        //导入进度与各阶段耗时通过JMX查看(com.Noah.utils:type=ExcelMetrics),每个操作结束时打印汇总
+        ExcelMetrics.registerMBean();
+        ExcelMetrics.addListener(System.out::println);
+        final Set<String> nonexist = new LinkedHashSet<>();
+        final ReferenceCache userCode = getUserCode();
+        final ReferenceCache roleCode = getRoleCode();
+        //已有的(user_code, role_code),文件内重复的行加入后同样跳过
+        final PairSet pairs = getExistingPairs();
+        if (pairs == null) {
+            POOL.close();
+            return;
+        }
+        //读取、校验插入、写报告逐行流过,不再整表读入内存
+        ImportPipeline pipeline = new ImportPipeline(POOL, "insert into auth_contact_user_role (user_code, role_code) values(?,? )",
+                BatchInserter.DEFAULT_BATCH_SIZE, CHUNK_SIZE, ImportPipeline.DEFAULT_QUEUE_CAPACITY, PARALLELISM);
+        File file = new File("C:\\Users\\taobi\\Desktop\\工作簿(2).xlsx");
+        //每块提交后记录检查点,中途失败后重新运行时跳过已提交的行
+        pipeline.setCheckpoint(new File(file.getPath() + ".checkpoint"));
+        try (OutputStream out = ExcelTools.newOutputStream(FileChannel.open(Paths.get("C:\\Users\\taobi\\Desktop\\out.xlsx"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+            ImportPipeline.PipelineResult result = pipeline.run(
+                    file,
+                    "xlsx",
+                    null,
+                    0,
+                    new String[]{"用户名", "角色"},
+                    (rowNum, map) -> {
+                        String user = userCode.get(map.get("用户名").toString());
+                        if (user == null){
+                            nonexist.add(map.get("用户名").toString());
+                            return null;
+                        }
+                        String role = roleCode.get(map.get("角色").toString());
+                        if (!pairs.add(user, role)) {
+                            return null;
+                        }
+                        return new Object[]{user, role};
+                    },
+                    new String[]{"用户名", "角色", "success"},
+                    new String[]{"user_code", "role_code", "success"},
+                    out);
+            System.out.println(result);
             for (String s : nonexist) {
                 System.out.println(s);
             }
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
-        } catch (SQLException e) {
+        } catch (IOException e) {
             e.printStackTrace();
         }
-
-        ExcelTools.writeLocalFile(
-                new File("C:\\Users\\taobi\\Desktop\\out.xls"),
-                ExcelTools.getHSSFWookbook(
-                        list,
-                        new String[]{"用户名", "角色", "success"},
-                        new String[]{"user_code", "role_code", "success"}
-                )
-        );
+        System.out.println(POOL.getMetrics());
+        POOL.close();
     }
 
-    public static List getName() throws ClassNotFoundException {
-        List<String> names = new ArrayList<>();
-        Class.forName("com.mysql.jdbc.Driver");
-        String url="jdbc:mysql://172.20.62.80:3307/auth_server";
-        String username="root";
-        String userpwd="abc123456";
-        try {
-            Connection conn = DriverManager.getConnection(url,username,userpwd);
-            Statement statement = conn.createStatement();
-            ResultSet rs = statement.executeQuery("select username from auth_user");
-            while(rs.next()){
-                names.add(rs.getString("username"));
-            }
+    /**
+     * 流式读取auth_contact_user_role中已有的用户角色
+     *
+     * @return 失败时返回null
+     */
+    public static PairSet getExistingPairs() {
+        try (Connection conn = POOL.getConnection()) {
+            return PairSet.load(conn, "select user_code, role_code from auth_contact_user_role");
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return names;
+        return null;
     }
 
-    public static Map getUserCode() throws ClassNotFoundException {
-        Map<String,String> userCode = new HashMap<>();
-        Class.forName("com.mysql.jdbc.Driver");
-        String url="jdbc:mysql://172.20.62.80:3307/auth_server";
-        String username="root";
-        String userpwd="abc123456";
-        try {
-            Connection conn = DriverManager.getConnection(url,username,userpwd);
-            Statement statement = conn.createStatement();
-            ResultSet rs = statement.executeQuery("select code, username from auth_user");
-            while(rs.next()){
-                userCode.put(rs.getString("username"),rs.getString("code"));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return userCode;
+    /**
+     * 用户名->用户编码,JVM内共享
+     */
+    public static ReferenceCache getUserCode() {
+        return ReferenceCache.of("auth_user",
+                ReferenceCache.jdbcLoader(POOL::getConnection, "auth_user", "username", "code"),
+                REFERENCE_MAX_SIZE, REFERENCE_TTL);
     }
 
-    public static Map getRoleCode() throws ClassNotFoundException {
-        Map<String,String> roleCode = new HashMap<>();
-        Class.forName("com.mysql.jdbc.Driver");
-        String url="jdbc:mysql://172.20.62.80:3307/auth_server";
-        String username="root";
-        String userpwd="abc123456";
-        try {
-            Connection conn = DriverManager.getConnection(url,username,userpwd);
-            Statement statement = conn.createStatement();
-            ResultSet rs = statement.executeQuery("select code, name from auth_role");
-            while(rs.next()){
-                roleCode.put(rs.getString("name"),rs.getString("code"));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return roleCode;
+    /**
+     * 角色名->角色编码,JVM内共享
+     */
+    public static ReferenceCache getRoleCode() {
+        return ReferenceCache.of("auth_role",
+                ReferenceCache.jdbcLoader(POOL::getConnection, "auth_role", "name", "code"),
+                REFERENCE_MAX_SIZE, REFERENCE_TTL);
     }
 }
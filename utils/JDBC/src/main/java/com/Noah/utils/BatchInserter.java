@@ -0,0 +1,217 @@
+package com.Noah.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC批量写入
+ * <p>
+ * 每batchSize行执行一次executeBatch,每commitSize行提交一次事务。
+ * 一批失败时回滚到该批的保存点,再逐行重试,失败的行记录下来,不中断整个导入。
+ * MySQL需在连接串中开启rewriteBatchedStatements,批量insert才会合并为多行insert,见{@link #rewriteBatchedStatements(String)}。
+ */
+public class BatchInserter implements AutoCloseable {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    public static final int DEFAULT_COMMIT_SIZE = 10000;
+
+    private final Connection conn;
+
+    private final PreparedStatement ps;
+
+    private final int batchSize;
+
+    private final int commitSize;
+
+    //当前批次的行号与参数,失败重试时使用
+    private final List<Integer> batchRows = new ArrayList<>();
+
+    private final List<Object[]> batchParams = new ArrayList<>();
+
+    private int uncommitted;
+
+    //最近添加的行号,与最近一次提交时最后一行的行号
+    private int lastRowNum = -1;
+
+    private int committedRowNum = -1;
+
+    private final BatchResult result = new BatchResult();
+
+    private ExcelMetrics.Operation metrics = ExcelMetrics.Operation.NONE;
+
+    @Data
+    public static class BatchResult {
+
+        private int success;
+
+        private List<RowFailure> failures = new ArrayList<>();
+
+        //因连接中断等与数据无关的错误整体放弃,failures中为全部行;行级失败不算
+        private boolean aborted;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class RowFailure {
+
+        //调用方传入的行号
+        private int rowNum;
+
+        private String message;
+    }
+
+    public BatchInserter(Connection conn, String sql) throws SQLException {
+        this(conn, sql, DEFAULT_BATCH_SIZE, DEFAULT_COMMIT_SIZE);
+    }
+
+    /**
+     * @param conn       连接,会关闭自动提交
+     * @param sql        insert语句
+     * @param batchSize  每批行数
+     * @param commitSize 每次提交的行数,不小于batchSize
+     */
+    public BatchInserter(Connection conn, String sql, int batchSize, int commitSize) throws SQLException {
+        this.conn = conn;
+        this.batchSize = batchSize;
+        this.commitSize = Math.max(commitSize, batchSize);
+        conn.setAutoCommit(false);
+        this.ps = conn.prepareStatement(sql);
+    }
+
+    /**
+     * MySQL连接串开启rewriteBatchedStatements
+     */
+    public static String rewriteBatchedStatements(String url) {
+        if (url.contains("rewriteBatchedStatements=")) return url;
+        return url + (url.indexOf('?') < 0 ? "?" : "&") + "rewriteBatchedStatements=true";
+    }
+
+    /**
+     * 是否为死锁或锁等待超时,此类错误应回滚整个事务后重试,而不是记为行失败
+     */
+    public static boolean isDeadlock(SQLException e) {
+        //40001:序列化失败/死锁;MySQL 1213:死锁,1205:锁等待超时
+        return "40001".equals(e.getSQLState()) || e.getErrorCode() == 1213 || e.getErrorCode() == 1205;
+    }
+
+    /**
+     * 添加一行
+     *
+     * @param rowNum 行号,失败时原样返回
+     * @param params 参数,按占位符顺序
+     */
+    public void add(int rowNum, Object... params) throws SQLException {
+        bind(params);
+        ps.addBatch();
+        batchRows.add(rowNum);
+        batchParams.add(params);
+        lastRowNum = rowNum;
+        if (batchRows.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * 写入剩余的行并提交
+     *
+     * @return 成功行数与失败的行
+     */
+    public BatchResult finish() throws SQLException {
+        flush();
+        if (uncommitted > 0) {
+            long begin = metrics.begin();
+            conn.commit();
+            uncommitted = 0;
+            committedRowNum = lastRowNum;
+            metrics.end(ExcelMetrics.Phase.DB_BATCH, begin);
+        }
+        return result;
+    }
+
+    /**
+     * 已添加但尚未执行的行数,为0时之前添加的行都已有结果
+     */
+    public int getPendingCount() {
+        return batchRows.size();
+    }
+
+    /**
+     * 最近一次提交时最后添加的行号,还没有提交时为-1;行号递增添加时,不大于它的行都已提交
+     */
+    public int getCommittedRowNum() {
+        return committedRowNum;
+    }
+
+    public BatchResult getResult() {
+        return result;
+    }
+
+    /**
+     * 批次执行、逐行重试与提交的耗时计入op的DB_BATCH阶段
+     */
+    public void setMetrics(ExcelMetrics.Operation op) {
+        this.metrics = op;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        ps.close();
+    }
+
+    private void flush() throws SQLException {
+        if (batchRows.isEmpty()) return;
+        long begin = metrics.begin();
+        Savepoint savepoint = conn.setSavepoint();
+        try {
+            ps.executeBatch();
+            result.success += batchRows.size();
+            //保存点不释放会在事务结束前一直留在服务端
+            conn.releaseSavepoint(savepoint);
+        } catch (BatchUpdateException e) {
+            //死锁时事务已被数据库回滚,交给调用方重试
+            if (isDeadlock(e)) throw e;
+            //rewrite后的多行insert无法定位失败行,回滚整批后逐行重试
+            conn.rollback(savepoint);
+            conn.releaseSavepoint(savepoint);
+            ps.clearBatch();
+            retryOneByOne();
+        }
+        uncommitted += batchRows.size();
+        batchRows.clear();
+        batchParams.clear();
+        if (uncommitted >= commitSize) {
+            conn.commit();
+            uncommitted = 0;
+            committedRowNum = lastRowNum;
+        }
+        metrics.end(ExcelMetrics.Phase.DB_BATCH, begin);
+    }
+
+    private void retryOneByOne() throws SQLException {
+        for (int i = 0; i < batchRows.size(); i++) {
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                bind(batchParams.get(i));
+                ps.executeUpdate();
+                result.success++;
+                conn.releaseSavepoint(savepoint);
+            } catch (SQLException e) {
+                if (isDeadlock(e)) throw e;
+                conn.rollback(savepoint);
+                conn.releaseSavepoint(savepoint);
+                result.failures.add(new RowFailure(batchRows.get(i), e.getMessage()));
+            }
+        }
+    }
+
+    private void bind(Object[] params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            ps.setObject(i + 1, params[i]);
+        }
+    }
+}
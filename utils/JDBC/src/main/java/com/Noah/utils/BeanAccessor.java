@@ -0,0 +1,306 @@
+package com.Noah.utils;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * bean属性访问器,每个类只解析一次
+ * <p>
+ * 按属性(含父类属性)查找getter/setter及无参构造,用LambdaMetafactory生成函数,调用开销接近直接调用;
+ * 所在类非public或对本类加载器不可见时退化为MethodHandle调用。读取返回属性的原始类型值,不做字符串转换。
+ */
+public final class BeanAccessor {
+
+    private static final ConcurrentMap<Class<?>, BeanAccessor> CACHE = new ConcurrentHashMap<>();
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private final Class<?> beanClass;
+
+    //属性名与getter,子类属性在前
+    private final Map<String, Function<Object, Object>> getters = new LinkedHashMap<>();
+
+    private final Map<String, BiConsumer<Object, Object>> setters = new LinkedHashMap<>();
+
+    //setter的参数类型
+    private final Map<String, Class<?>> setterTypes = new HashMap<>();
+
+    //无参构造,没有时为null
+    private final Supplier<Object> constructor;
+
+    private BeanAccessor(Class<?> beanClass) {
+        this.beanClass = beanClass;
+        this.constructor = compileConstructor(beanClass);
+        for (Class<?> c = beanClass; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || getters.containsKey(field.getName())
+                        || setters.containsKey(field.getName())) {
+                    continue;
+                }
+                Method getter = findGetter(beanClass, field);
+                if (getter != null) {
+                    getters.put(field.getName(), compile(getter));
+                }
+                Method setter = findSetter(beanClass, field);
+                if (setter != null) {
+                    setters.put(field.getName(), compileSetter(setter));
+                    setterTypes.put(field.getName(), setter.getParameterTypes()[0]);
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取类的读取器,结果会被缓存
+     */
+    public static BeanAccessor of(Class<?> beanClass) {
+        BeanAccessor accessor = CACHE.get(beanClass);
+        if (accessor == null) {
+            accessor = new BeanAccessor(beanClass);
+            BeanAccessor existing = CACHE.putIfAbsent(beanClass, accessor);
+            if (existing != null) accessor = existing;
+        }
+        return accessor;
+    }
+
+    public Class<?> getBeanClass() {
+        return beanClass;
+    }
+
+    /**
+     * 有getter的属性名
+     */
+    public Set<String> getFieldNames() {
+        return Collections.unmodifiableSet(getters.keySet());
+    }
+
+    /**
+     * 读取属性值,属性不存在时返回null
+     */
+    public Object get(Object bean, String fieldName) {
+        Function<Object, Object> getter = getters.get(fieldName);
+        return getter == null ? null : getter.apply(bean);
+    }
+
+    /**
+     * 有setter的属性名
+     */
+    public Set<String> getWritableFieldNames() {
+        return Collections.unmodifiableSet(setters.keySet());
+    }
+
+    /**
+     * 写入属性值,属性不存在时忽略
+     */
+    public void set(Object bean, String fieldName, Object value) {
+        BiConsumer<Object, Object> setter = setters.get(fieldName);
+        if (setter != null) setter.accept(bean, value);
+    }
+
+    /**
+     * 用无参构造创建实例
+     */
+    public Object newInstance() {
+        if (constructor == null) {
+            throw new IllegalStateException("没有无参构造:" + beanClass.getName());
+        }
+        return constructor.get();
+    }
+
+    BiConsumer<Object, Object> setter(String fieldName) {
+        return setters.get(fieldName);
+    }
+
+    Class<?> setterType(String fieldName) {
+        return setterTypes.get(fieldName);
+    }
+
+    /**
+     * 按列顺序取出getter,不存在的属性对应null,供逐行读取时按下标调用
+     */
+    @SuppressWarnings("unchecked")
+    Function<Object, Object>[] getters(String[] fieldNames) {
+        Function<Object, Object>[] result = (Function<Object, Object>[]) new Function<?, ?>[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            result[i] = getters.get(fieldNames[i]);
+        }
+        return result;
+    }
+
+    /**
+     * 属性的getter,先找getXxx,boolean属性再找isXxx
+     */
+    private static Method findGetter(Class<?> beanClass, Field field) {
+        String name = field.getName();
+        String suffix = name.substring(0, 1).toUpperCase() + name.substring(1);
+        Method method = findPublicMethod(beanClass, "get" + suffix);
+        if (method == null && (field.getType() == boolean.class || field.getType() == Boolean.class)) {
+            method = findPublicMethod(beanClass, "is" + suffix);
+        }
+        return method;
+    }
+
+    /**
+     * 属性的setter,参数类型与属性类型一致
+     */
+    private static Method findSetter(Class<?> beanClass, Field field) {
+        String name = field.getName();
+        try {
+            return beanClass.getMethod("set" + name.substring(0, 1).toUpperCase() + name.substring(1), field.getType());
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Method findPublicMethod(Class<?> beanClass, String name) {
+        try {
+            Method method = beanClass.getMethod(name);
+            return method.getReturnType() == void.class ? null : method;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Function<Object, Object> compile(final Method getter) {
+        try {
+            getter.setAccessible(true);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle handle = lookup.unreflect(getter);
+            if (canUseLambda(getter)) {
+                CallSite site = LambdaMetafactory.metafactory(lookup, "apply",
+                        MethodType.methodType(Function.class), GETTER_TYPE, handle,
+                        MethodType.methodType(wrap(getter.getReturnType()), getter.getDeclaringClass()));
+                @SuppressWarnings("unchecked")
+                Function<Object, Object> function = (Function<Object, Object>) site.getTarget().invokeExact();
+                return function;
+            }
+            final MethodHandle generic = handle.asType(GETTER_TYPE);
+            return bean -> {
+                try {
+                    return generic.invokeExact(bean);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException("读取属性失败:" + getter.getName(), e);
+                }
+            };
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("无法访问getter:" + getter, e);
+        }
+    }
+
+    private static BiConsumer<Object, Object> compileSetter(final Method setter) {
+        try {
+            setter.setAccessible(true);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle handle = lookup.unreflect(setter);
+            if (canUseLambda(setter.getDeclaringClass(), setter.getModifiers())) {
+                CallSite site = LambdaMetafactory.metafactory(lookup, "accept",
+                        MethodType.methodType(BiConsumer.class), SETTER_TYPE, handle,
+                        MethodType.methodType(void.class, setter.getDeclaringClass(), wrap(setter.getParameterTypes()[0])));
+                @SuppressWarnings("unchecked")
+                BiConsumer<Object, Object> function = (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+                return function;
+            }
+            final MethodHandle generic = handle.asType(SETTER_TYPE);
+            return (bean, value) -> {
+                try {
+                    generic.invokeExact(bean, value);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException("写入属性失败:" + setter.getName(), e);
+                }
+            };
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("无法访问setter:" + setter, e);
+        }
+    }
+
+    private static Supplier<Object> compileConstructor(Class<?> beanClass) {
+        final Constructor<?> ctor;
+        try {
+            ctor = beanClass.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+        try {
+            ctor.setAccessible(true);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle handle = lookup.unreflectConstructor(ctor);
+            if (canUseLambda(beanClass, ctor.getModifiers()) && !Modifier.isAbstract(beanClass.getModifiers())) {
+                CallSite site = LambdaMetafactory.metafactory(lookup, "get",
+                        MethodType.methodType(Supplier.class), CONSTRUCTOR_TYPE, handle,
+                        MethodType.methodType(beanClass));
+                @SuppressWarnings("unchecked")
+                Supplier<Object> function = (Supplier<Object>) site.getTarget().invokeExact();
+                return function;
+            }
+            final MethodHandle generic = handle.asType(CONSTRUCTOR_TYPE);
+            return () -> {
+                try {
+                    return generic.invokeExact();
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException("实例化失败:" + ctor, e);
+                }
+            };
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("无法访问构造方法:" + ctor, e);
+        }
+    }
+
+    private static boolean canUseLambda(Method getter) {
+        return canUseLambda(getter.getDeclaringClass(), getter.getModifiers());
+    }
+
+    /**
+     * 生成的lambda类由本类加载器解析,要求所在类及成员是public且类对本类加载器可见
+     */
+    private static boolean canUseLambda(Class<?> owner, int modifiers) {
+        if (!Modifier.isPublic(owner.getModifiers()) || !Modifier.isPublic(modifiers)) {
+            return false;
+        }
+        try {
+            return Class.forName(owner.getName(), false, BeanAccessor.class.getClassLoader()) == owner;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        if (!type.isPrimitive()) return type;
+        if (type == int.class) return Integer.class;
+        if (type == long.class) return Long.class;
+        if (type == boolean.class) return Boolean.class;
+        if (type == double.class) return Double.class;
+        if (type == float.class) return Float.class;
+        if (type == short.class) return Short.class;
+        if (type == byte.class) return Byte.class;
+        return Character.class;
+    }
+}
@@ -0,0 +1,208 @@
+package com.Noah.utils;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+/**
+ * 行数据到bean的映射计划
+ * <p>
+ * 按列位置预先确定每列对应的setter与类型转换,每个类与列布局只生成一次;
+ * 映射时直接由单元格字符串转换并调用setter,不经过中间Map。
+ * 数值单元格的字符串已取整,小数与日期属性取单元格的原值转换。
+ */
+public final class BeanMapper<T> {
+
+    private static final ConcurrentMap<Class<?>, ConcurrentMap<List<String>, BeanMapper<?>>> CACHE = new ConcurrentHashMap<>();
+
+    //单元格读取时会去掉空白,日期与时间之间没有空格
+    private static final DateTimeFormatter[] DATE_TIME_FORMATS = {
+            DateTimeFormatter.ofPattern("yyyy-MM-ddHH:mm:ss"),
+            DateTimeFormatter.ofPattern("yyyy/MM/ddHH:mm:ss")
+    };
+
+    private static final DateTimeFormatter[] DATE_FORMATS = {
+            DateTimeFormatter.ofPattern("yyyy-MM-dd"),
+            DateTimeFormatter.ofPattern("yyyy/MM/dd"),
+            DateTimeFormatter.ofPattern("yyyyMMdd")
+    };
+
+    private final BeanAccessor accessor;
+
+    private final String[] fieldName;
+
+    private final BiConsumer<Object, Object>[] setters;
+
+    private final Converter[] converters;
+
+    private final boolean[] primitive;
+
+    @SuppressWarnings("unchecked")
+    private BeanMapper(Class<T> clazz, String[] fieldName) {
+        this.accessor = BeanAccessor.of(clazz);
+        this.fieldName = fieldName.clone();
+        this.setters = (BiConsumer<Object, Object>[]) new BiConsumer<?, ?>[fieldName.length];
+        this.converters = new Converter[fieldName.length];
+        this.primitive = new boolean[fieldName.length];
+        for (int i = 0; i < fieldName.length; i++) {
+            if (fieldName[i] == null) continue;
+            setters[i] = accessor.setter(fieldName[i]);
+            if (setters[i] == null) continue;
+            Class<?> type = accessor.setterType(fieldName[i]);
+            converters[i] = converter(type);
+            primitive[i] = type.isPrimitive();
+        }
+    }
+
+    /**
+     * 单元格到属性值的转换
+     */
+    @FunctionalInterface
+    private interface Converter {
+        /**
+         * @param text   单元格字符串
+         * @param number 数值单元格未经取整的值,其余单元格为NaN
+         * @param date   是否为日期格式的数值单元格
+         */
+        Object convert(String text, double number, boolean date);
+    }
+
+    /**
+     * 获取映射计划,同一个类与列布局只生成一次
+     *
+     * @param clazz     目标类,需要无参构造
+     * @param fieldName 各列对应的属性名,按列顺序排列;为null或没有setter的列忽略
+     * @return 映射计划
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> BeanMapper<T> of(Class<T> clazz, String[] fieldName) {
+        ConcurrentMap<List<String>, BeanMapper<?>> byLayout = CACHE.get(clazz);
+        if (byLayout == null) {
+            byLayout = new ConcurrentHashMap<>();
+            ConcurrentMap<List<String>, BeanMapper<?>> existing = CACHE.putIfAbsent(clazz, byLayout);
+            if (existing != null) byLayout = existing;
+        }
+        List<String> key = Arrays.asList(fieldName.clone());
+        BeanMapper<?> mapper = byLayout.get(key);
+        if (mapper == null) {
+            mapper = new BeanMapper<>(clazz, fieldName);
+            BeanMapper<?> existing = byLayout.putIfAbsent(key, mapper);
+            if (existing != null) mapper = existing;
+        }
+        return (BeanMapper<T>) mapper;
+    }
+
+    /**
+     * 将一行数据映射为bean,空单元格不赋值
+     *
+     * @param rowNum 行号,用于错误信息
+     * @param values 按列顺序排列的单元格值
+     * @return bean
+     */
+    public T map(int rowNum, String[] values) {
+        return map(rowNum, values, null, null);
+    }
+
+    /**
+     * 将一行数据映射为bean,空单元格不赋值
+     *
+     * @param rowNum  行号,用于错误信息
+     * @param values  按列顺序排列的单元格值
+     * @param numbers 数值单元格未经取整的值,其余单元格为NaN;为null时只按字符串转换
+     * @param dates   各数值单元格是否为日期格式;为null时都不是
+     * @return bean
+     */
+    @SuppressWarnings("unchecked")
+    public T map(int rowNum, String[] values, double[] numbers, boolean[] dates) {
+        Object bean = accessor.newInstance();
+        for (int i = 0; i < setters.length; i++) {
+            if (setters[i] == null || i >= values.length) continue;
+            String value = values[i];
+            if (value == null || value.isEmpty()) continue;
+            double number = numbers == null ? Double.NaN : numbers[i];
+            boolean date = dates != null && dates[i];
+            Object converted;
+            try {
+                converted = converters[i].convert(value, number, date);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("第" + (rowNum + 1) + "行" + fieldName[i] + "转换失败:" + value, e);
+            }
+            if (converted == null && primitive[i]) continue;
+            setters[i].accept(bean, converted);
+        }
+        return (T) bean;
+    }
+
+    private static Converter converter(Class<?> type) {
+        if (type == String.class || type == Object.class) {
+            return (s, n, d) -> s;
+        } else if (type == int.class || type == Integer.class) {
+            return (s, n, d) -> Integer.valueOf(s);
+        } else if (type == long.class || type == Long.class) {
+            return (s, n, d) -> Long.valueOf(s);
+        } else if (type == double.class || type == Double.class) {
+            return (s, n, d) -> Double.isNaN(n) ? Double.valueOf(s) : Double.valueOf(n);
+        } else if (type == float.class || type == Float.class) {
+            return (s, n, d) -> Double.isNaN(n) ? Float.valueOf(s) : Float.valueOf((float) n);
+        } else if (type == short.class || type == Short.class) {
+            return (s, n, d) -> Short.valueOf(s);
+        } else if (type == byte.class || type == Byte.class) {
+            return (s, n, d) -> Byte.valueOf(s);
+        } else if (type == boolean.class || type == Boolean.class) {
+            return (s, n, d) -> parseBoolean(s);
+        } else if (type == BigDecimal.class) {
+            //BigDecimal.valueOf取double最短的十进制表示,99.95不会变成99.9500000000000028...
+            return (s, n, d) -> Double.isNaN(n) ? new BigDecimal(s) : BigDecimal.valueOf(n);
+        } else if (type == BigInteger.class) {
+            return (s, n, d) -> new BigInteger(s);
+        } else if (type == Date.class) {
+            return (s, n, d) -> Date.from(parseDateTime(s, n, d).atZone(ZoneId.systemDefault()).toInstant());
+        } else if (type == LocalDateTime.class) {
+            return BeanMapper::parseDateTime;
+        } else if (type == LocalDate.class) {
+            return (s, n, d) -> parseDateTime(s, n, d).toLocalDate();
+        }
+        throw new IllegalArgumentException("不支持的属性类型:" + type.getName());
+    }
+
+    private static Boolean parseBoolean(String s) {
+        if ("true".equalsIgnoreCase(s) || "1".equals(s) || "是".equals(s)) return Boolean.TRUE;
+        if ("false".equalsIgnoreCase(s) || "0".equals(s) || "否".equals(s)) return Boolean.FALSE;
+        throw new IllegalArgumentException("无法识别的布尔值:" + s);
+    }
+
+    /**
+     * 日期格式的数值单元格由原值(Excel序列号)转换,其余按常见格式解析文本,
+     * 不是日期格式的数字(如20240101)按文本解析
+     */
+    private static LocalDateTime parseDateTime(String s, double number, boolean date) {
+        if (date && !Double.isNaN(number)) {
+            return LocalDateTime.ofInstant(DateUtil.getJavaDate(number).toInstant(), ZoneId.systemDefault());
+        }
+        for (DateTimeFormatter format : DATE_TIME_FORMATS) {
+            try {
+                return LocalDateTime.parse(s, format);
+            } catch (DateTimeParseException e) {
+                //尝试下一个格式
+            }
+        }
+        for (DateTimeFormatter format : DATE_FORMATS) {
+            try {
+                return LocalDate.parse(s, format).atStartOfDay();
+            } catch (DateTimeParseException e) {
+                //尝试下一个格式
+            }
+        }
+        throw new IllegalArgumentException("无法识别的日期:" + s);
+    }
+}
@@ -0,0 +1,107 @@
+package com.Noah.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 写入WritableByteChannel的输出流
+ * <p>
+ * 使用池化的直接缓冲区,写满后整块写入通道;写文件时不再经过JDK内部的临时直接缓冲区。
+ * close时写出剩余数据、归还缓冲区并关闭通道。非线程安全。
+ */
+class ChannelOutputStream extends OutputStream {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    //池中最多保留的缓冲区数
+    private static final int POOL_SIZE = 16;
+
+    private static final Queue<ByteBuffer> POOL = new ConcurrentLinkedQueue<>();
+
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private final WritableByteChannel channel;
+
+    private ByteBuffer buffer;
+
+    ChannelOutputStream(WritableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = acquire();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) return;
+        try {
+            drain();
+        } finally {
+            release(buffer);
+            buffer = null;
+            channel.close();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (buffer == null) throw new IOException("输出流已关闭");
+    }
+
+    private static ByteBuffer acquire() {
+        ByteBuffer buffer = POOL.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        POOLED.decrementAndGet();
+        return buffer;
+    }
+
+    private static void release(ByteBuffer buffer) {
+        if (POOLED.incrementAndGet() <= POOL_SIZE) {
+            buffer.clear();
+            POOL.offer(buffer);
+        } else {
+            POOLED.decrementAndGet();
+        }
+    }
+}
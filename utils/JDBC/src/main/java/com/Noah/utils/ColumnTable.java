@@ -0,0 +1,367 @@
+package com.Noah.utils;
+
+import java.util.*;
+
+/**
+ * 列式存储的读取结果
+ * <p>
+ * 每列单独存放:全部为整数(或空)的列存为long[],其余列做字典编码存为int[],
+ * 不同值较多的字符串列退化为String[]。相比List&lt;Map&gt;,每个单元格不再单独占用对象,
+ * 列名也只保存一次。
+ */
+public class ColumnTable {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    //行数达到该值后,每隔该行数检查一次,不同值超过一半的字符串列不再做字典编码
+    private static final int DICTIONARY_CHECK_ROWS = 4096;
+
+    private final String[] columnName;
+
+    private final Map<String, Integer> columnIndex = new HashMap<>();
+
+    private final Column[] columns;
+
+    private int rowCount;
+
+    public ColumnTable(String[] columnName) {
+        this.columnName = columnName.clone();
+        this.columns = new Column[columnName.length];
+        for (int i = 0; i < columnName.length; i++) {
+            columnIndex.put(columnName[i], i);
+            columns[i] = new LongColumn();
+        }
+    }
+
+    /**
+     * 追加一行,values按columnName顺序排列
+     */
+    public void addRow(String[] values) {
+        for (int i = 0; i < columns.length; i++) {
+            String value = values[i] == null ? "" : values[i];
+            if (!columns[i].add(rowCount, value)) {
+                columns[i] = columns[i].toStringColumn(rowCount);
+                columns[i].add(rowCount, value);
+                //中途由数值列转换而来的列,转换时即检查一次
+                checkDictionary(i, rowCount + 1);
+            }
+        }
+        rowCount++;
+        if (rowCount % DICTIONARY_CHECK_ROWS == 0) {
+            for (int i = 0; i < columns.length; i++) {
+                checkDictionary(i, rowCount);
+            }
+        }
+    }
+
+    /**
+     * 不同值超过一半的字典编码列退化为String[],字典只会变大,之后不再转回
+     */
+    private void checkDictionary(int col, int rows) {
+        if (rows >= DICTIONARY_CHECK_ROWS && columns[col] instanceof DictColumn
+                && ((DictColumn) columns[col]).dict.size() > rows / 2) {
+            columns[col] = ((DictColumn) columns[col]).toPlain(rows);
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public String[] getColumnName() {
+        return columnName.clone();
+    }
+
+    /**
+     * 列名对应的列号,不存在时返回-1
+     */
+    public int getColumnIndex(String name) {
+        Integer idx = columnIndex.get(name);
+        return idx == null ? -1 : idx;
+    }
+
+    public String getString(int row, int col) {
+        checkRow(row);
+        return columns[col].getString(row);
+    }
+
+    public String getString(int row, String name) {
+        return getString(row, requireColumn(name));
+    }
+
+    /**
+     * 是否为数值列,数值列可以用getLong读取
+     */
+    public boolean isNumeric(int col) {
+        return columns[col] instanceof LongColumn;
+    }
+
+    /**
+     * 读取数值列的值,空单元格返回0,可用isBlank区分
+     */
+    public long getLong(int row, int col) {
+        checkRow(row);
+        if (!(columns[col] instanceof LongColumn)) {
+            throw new IllegalStateException("非数值列:" + columnName[col]);
+        }
+        return ((LongColumn) columns[col]).values[row];
+    }
+
+    public long getLong(int row, String name) {
+        return getLong(row, requireColumn(name));
+    }
+
+    public boolean isBlank(int row, int col) {
+        checkRow(row);
+        return columns[col].isBlank(row);
+    }
+
+    /**
+     * 是否为字典编码列,字典编码列可以用getCode/getDictionary读取
+     */
+    public boolean isDictionary(int col) {
+        return columns[col] instanceof DictColumn;
+    }
+
+    /**
+     * 字典编码列中该单元格的编码
+     */
+    public int getCode(int row, int col) {
+        checkRow(row);
+        if (!(columns[col] instanceof DictColumn)) {
+            throw new IllegalStateException("非字典编码列:" + columnName[col]);
+        }
+        return ((DictColumn) columns[col]).codes[row];
+    }
+
+    /**
+     * 字典编码列的字典,下标即编码
+     */
+    public List<String> getDictionary(int col) {
+        if (!(columns[col] instanceof DictColumn)) {
+            throw new IllegalStateException("非字典编码列:" + columnName[col]);
+        }
+        return Collections.unmodifiableList(((DictColumn) columns[col]).dict);
+    }
+
+    /**
+     * 读取整行,结果与readExcel返回的Map一致
+     */
+    public Map<String, Object> getRow(int row) {
+        checkRow(row);
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < columns.length; i++) {
+            map.put(columnName[i], columns[i].getString(row));
+        }
+        return map;
+    }
+
+    /**
+     * 转为readExcel的返回格式
+     */
+    public List<Map<String, Object>> toList() {
+        List<Map<String, Object>> list = new ArrayList<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            list.add(getRow(i));
+        }
+        return list;
+    }
+
+    /**
+     * 估算占用的堆内存字节数,用于按大小淘汰缓存
+     */
+    long estimateBytes() {
+        long bytes = 64;
+        for (Column column : columns) {
+            bytes += column.estimateBytes();
+        }
+        return bytes;
+    }
+
+    private int requireColumn(String name) {
+        int idx = getColumnIndex(name);
+        if (idx < 0) {
+            throw new IllegalArgumentException("列不存在:" + name);
+        }
+        return idx;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("row:" + row + ",rowCount:" + rowCount);
+        }
+    }
+
+    private static abstract class Column {
+
+        /**
+         * 写入第row行,无法存入当前类型时返回false
+         */
+        abstract boolean add(int row, String value);
+
+        abstract String getString(int row);
+
+        abstract boolean isBlank(int row);
+
+        abstract long estimateBytes();
+
+        Column toStringColumn(int rows) {
+            DictColumn column = new DictColumn();
+            for (int i = 0; i < rows; i++) {
+                column.add(i, getString(i));
+            }
+            return column;
+        }
+    }
+
+    private static class LongColumn extends Column {
+
+        private long[] values = new long[INITIAL_CAPACITY];
+
+        private final BitSet blank = new BitSet();
+
+        @Override
+        boolean add(int row, String value) {
+            long v;
+            if (value.isEmpty()) {
+                blank.set(row);
+                v = 0;
+            } else {
+                v = parse(value);
+                //只接受与Long.toString互逆的写法,保证读回的字符串不变
+                if (v == 0 && !"0".equals(value)) return false;
+            }
+            if (row == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[row] = v;
+            return true;
+        }
+
+        /**
+         * 解析规范的十进制整数,不合规时返回0
+         */
+        private static long parse(String s) {
+            int len = s.length();
+            int i = s.charAt(0) == '-' ? 1 : 0;
+            if (i == len || len - i > 18) return 0;
+            if (s.charAt(i) == '0' && len - i > 1) return 0;
+            long v = 0;
+            for (; i < len; i++) {
+                char ch = s.charAt(i);
+                if (ch < '0' || ch > '9') return 0;
+                v = v * 10 + (ch - '0');
+            }
+            //"-0"解析为0,同样视为不合规
+            return s.charAt(0) == '-' ? -v : v;
+        }
+
+        @Override
+        String getString(int row) {
+            return blank.get(row) ? "" : Long.toString(values[row]);
+        }
+
+        @Override
+        boolean isBlank(int row) {
+            return blank.get(row);
+        }
+
+        @Override
+        long estimateBytes() {
+            return 16 + 8L * values.length + 32 + blank.size() / 8;
+        }
+    }
+
+    private static class DictColumn extends Column {
+
+        private int[] codes = new int[INITIAL_CAPACITY];
+
+        private final List<String> dict = new ArrayList<>();
+
+        private final Map<String, Integer> lookup = new HashMap<>();
+
+        @Override
+        boolean add(int row, String value) {
+            Integer code = lookup.get(value);
+            if (code == null) {
+                code = dict.size();
+                dict.add(value);
+                lookup.put(value, code);
+            }
+            if (row == codes.length) {
+                codes = Arrays.copyOf(codes, codes.length * 2);
+            }
+            codes[row] = code;
+            return true;
+        }
+
+        @Override
+        String getString(int row) {
+            return dict.get(codes[row]);
+        }
+
+        @Override
+        boolean isBlank(int row) {
+            return getString(row).isEmpty();
+        }
+
+        @Override
+        long estimateBytes() {
+            //codes、字典,以及lookup中每个值的条目与Integer
+            long bytes = 16 + 4L * codes.length + 64 + 64;
+            for (String value : dict) {
+                bytes += 4 + WorkbookCache.estimateBytes(value) + 48;
+            }
+            return bytes;
+        }
+
+        PlainColumn toPlain(int rows) {
+            PlainColumn column = new PlainColumn(codes.length);
+            for (int i = 0; i < rows; i++) {
+                column.add(i, getString(i));
+            }
+            return column;
+        }
+    }
+
+    private static class PlainColumn extends Column {
+
+        private String[] values;
+
+        PlainColumn(int capacity) {
+            values = new String[capacity];
+        }
+
+        @Override
+        boolean add(int row, String value) {
+            if (row == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[row] = value;
+            return true;
+        }
+
+        @Override
+        String getString(int row) {
+            return values[row];
+        }
+
+        @Override
+        boolean isBlank(int row) {
+            return values[row].isEmpty();
+        }
+
+        @Override
+        long estimateBytes() {
+            long bytes = 16 + 4L * values.length;
+            for (String value : values) {
+                if (value != null) bytes += WorkbookCache.estimateBytes(value);
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.Noah.utils;
+
+import org.apache.poi.ss.usermodel.Sheet;
+
+/**
+ * 按显示长度估算列宽
+ * <p>
+ * 写入时记录每列字符串的最大显示长度,中日韩及全角字符按2个字符宽计,其余按1个;
+ * 写完后一次性设置列宽,代替逐个单元格计算字体度量的autoSizeColumn,流式写入时同样可用。
+ * 前SAMPLE_ROWS行逐行统计,之后每SAMPLE_STRIDE行抽取一行。非线程安全。
+ */
+class ColumnWidths {
+
+    //逐行统计的行数
+    private static final int SAMPLE_ROWS = 1000;
+
+    //之后每隔多少行抽取一行
+    private static final int SAMPLE_STRIDE = 16;
+
+    //两侧留白,字符数
+    private static final int PADDING = 2;
+
+    //Excel允许的最大列宽,字符数
+    private static final int MAX_WIDTH = 255;
+
+    private final int[] widths;
+
+    private int rowCount;
+
+    private boolean sampling = true;
+
+    ColumnWidths(int columns) {
+        this.widths = new int[columns];
+    }
+
+    /**
+     * 开始新的一行,返回该行是否参与统计
+     */
+    boolean nextRow() {
+        sampling = rowCount < SAMPLE_ROWS || rowCount % SAMPLE_STRIDE == 0;
+        rowCount++;
+        return sampling;
+    }
+
+    /**
+     * 记录当前行某列的值
+     */
+    void update(int column, String value) {
+        //每个字符最多计2,长度的2倍不超过当前最大值时不必逐字符统计
+        if (!sampling || value == null || value.length() * 2 <= widths[column]) return;
+        int width = displayWidth(value);
+        if (width > widths[column]) {
+            widths[column] = width;
+        }
+    }
+
+    /**
+     * 一次性设置各列宽度
+     */
+    void apply(Sheet sheet) {
+        for (int i = 0; i < widths.length; i++) {
+            sheet.setColumnWidth(i, Math.min(widths[i] + PADDING, MAX_WIDTH) * 256);
+        }
+    }
+
+    /**
+     * 显示长度,宽字符计2
+     */
+    static int displayWidth(String value) {
+        int width = 0;
+        for (int i = 0; i < value.length(); i++) {
+            width += isWide(value.charAt(i)) ? 2 : 1;
+        }
+        return width;
+    }
+
+    /**
+     * 中日韩文字、全角符号等宽字符;扩展区汉字为代理对,两个char各计1,合计同样为2
+     */
+    private static boolean isWide(char c) {
+        if (c < 0x1100) return false;
+        return c <= 0x115F                      //韩文字母
+                || (c >= 0x2E80 && c <= 0xA4CF) //中日韩部首、标点、假名、汉字
+                || (c >= 0xAC00 && c <= 0xD7A3) //韩文音节
+                || (c >= 0xF900 && c <= 0xFAFF) //兼容汉字
+                || (c >= 0xFE30 && c <= 0xFE4F) //兼容标点
+                || (c >= 0xFF00 && c <= 0xFF60) //全角字符
+                || (c >= 0xFFE0 && c <= 0xFFE6);
+    }
+}
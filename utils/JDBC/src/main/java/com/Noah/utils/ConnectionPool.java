@@ -0,0 +1,537 @@
+package com.Noah.utils;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 轻量的JDBC连接池
+ * <p>
+ * 连接数不超过maxSize,借出时校验连接是否可用。空闲超过idleTimeout的连接由后台的守护线程
+ * 每隔idleTimeout/2检查并关闭,借出时同样会顺带关闭。
+ * 借出的连接close时归还连接池:未提交的事务回滚,借出期间修改过的autoCommit、readOnly、
+ * 事务隔离级别与catalog恢复为新建连接时的值,借出期间未关闭的语句一并关闭。
+ * 每个连接缓存最近使用的prepareStatement(String),同一sql的语句close后再次prepare时直接复用。
+ */
+@Slf4j
+public class ConnectionPool implements Closeable {
+
+    public static final int DEFAULT_MAX_SIZE = 8;
+
+    public static final long DEFAULT_BORROW_TIMEOUT = 30000;
+
+    public static final long DEFAULT_IDLE_TIMEOUT = 10 * 60 * 1000L;
+
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+    //isValid的超时时间,秒
+    private static final int VALIDATION_TIMEOUT = 3;
+
+    //空闲检查的最短间隔
+    private static final long MIN_REAP_INTERVAL = 1000;
+
+    //借出期间调用后需要在归还时恢复会话状态的方法
+    private static final Set<String> SESSION_SETTERS = new HashSet<>(Arrays.asList(
+            "setAutoCommit", "setReadOnly", "setTransactionIsolation", "setCatalog"));
+
+    private final String url;
+
+    private final String username;
+
+    private final String password;
+
+    private final int maxSize;
+
+    private final long borrowTimeoutMillis;
+
+    private final long idleTimeoutMillis;
+
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+
+    //空闲连接,最近归还的在头部
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+
+    //关闭空闲超时的连接
+    private final ScheduledExecutorService reaper;
+
+    private volatile boolean closed;
+
+    private final AtomicLong borrowCount = new AtomicLong();
+
+    private final AtomicLong borrowWaitNanos = new AtomicLong();
+
+    private final AtomicLong maxBorrowWaitNanos = new AtomicLong();
+
+    private final AtomicLong timeoutCount = new AtomicLong();
+
+    private final AtomicLong createdCount = new AtomicLong();
+
+    private final AtomicLong discardedCount = new AtomicLong();
+
+    private final AtomicLong statementHits = new AtomicLong();
+
+    private final AtomicLong statementMisses = new AtomicLong();
+
+    /**
+     * 连接池统计
+     */
+    @Data
+    public static class Metrics {
+
+        private long borrowCount;
+
+        //借出时等待的总时间与最长时间,毫秒
+        private double totalWaitMillis;
+
+        private double maxWaitMillis;
+
+        private long timeoutCount;
+
+        private long createdCount;
+
+        //校验失败或空闲超时关闭的连接数
+        private long discardedCount;
+
+        private int activeCount;
+
+        private int idleCount;
+
+        private long statementHits;
+
+        private long statementMisses;
+
+        public double getAverageWaitMillis() {
+            return borrowCount == 0 ? 0 : totalWaitMillis / borrowCount;
+        }
+    }
+
+    public ConnectionPool(String url, String username, String password) {
+        this(url, username, password, DEFAULT_MAX_SIZE, DEFAULT_BORROW_TIMEOUT, DEFAULT_IDLE_TIMEOUT,
+                DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * @param maxSize             最大连接数
+     * @param borrowTimeoutMillis 没有可用连接时最长等待时间
+     * @param idleTimeoutMillis   空闲超过该时间的连接关闭
+     * @param statementCacheSize  每个连接缓存的语句数,0表示不缓存
+     */
+    public ConnectionPool(String url, String username, String password, int maxSize, long borrowTimeoutMillis,
+                          long idleTimeoutMillis, int statementCacheSize) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+        this.reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ConnectionPool-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(idleTimeoutMillis / 2, MIN_REAP_INTERVAL);
+        reaper.scheduleWithFixedDelay(this::closeExpired, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 借出连接,使用完毕后close归还
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) throw new SQLException("连接池已关闭");
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLException("获取连接超时:" + borrowTimeoutMillis + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("获取连接被中断", e);
+        }
+        long wait = System.nanoTime() - start;
+        borrowCount.incrementAndGet();
+        borrowWaitNanos.addAndGet(wait);
+        long max;
+        while (wait > (max = maxBorrowWaitNanos.get()) && !maxBorrowWaitNanos.compareAndSet(max, wait)) {
+            //重试
+        }
+        try {
+            PooledConnection pooled;
+            while ((pooled = pollIdle()) != null) {
+                if (pooled.physical.isValid(VALIDATION_TIMEOUT)) {
+                    return pooled.borrow();
+                }
+                discard(pooled);
+            }
+            Connection physical = DriverManager.getConnection(url, username, password);
+            createdCount.incrementAndGet();
+            try {
+                return new PooledConnection(physical).borrow();
+            } catch (SQLException | RuntimeException e) {
+                physical.close();
+                throw e;
+            }
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public Metrics getMetrics() {
+        Metrics metrics = new Metrics();
+        metrics.setBorrowCount(borrowCount.get());
+        metrics.setTotalWaitMillis(borrowWaitNanos.get() / 1e6);
+        metrics.setMaxWaitMillis(maxBorrowWaitNanos.get() / 1e6);
+        metrics.setTimeoutCount(timeoutCount.get());
+        metrics.setCreatedCount(createdCount.get());
+        metrics.setDiscardedCount(discardedCount.get());
+        metrics.setActiveCount(maxSize - permits.availablePermits());
+        synchronized (idle) {
+            metrics.setIdleCount(idle.size());
+        }
+        metrics.setStatementHits(statementHits.get());
+        metrics.setStatementMisses(statementMisses.get());
+        return metrics;
+    }
+
+    /**
+     * 关闭空闲连接,借出的连接归还时关闭
+     */
+    @Override
+    public void close() {
+        closed = true;
+        reaper.shutdown();
+        PooledConnection pooled;
+        while ((pooled = pollIdle()) != null) {
+            pooled.closePhysical();
+        }
+    }
+
+    /**
+     * 取最近归还的空闲连接,顺带关闭空闲超时的连接
+     */
+    private PooledConnection pollIdle() {
+        closeExpired();
+        synchronized (idle) {
+            return idle.pollFirst();
+        }
+    }
+
+    /**
+     * 关闭空闲超时的连接,最久未用的在尾部
+     */
+    private void closeExpired() {
+        long now = System.currentTimeMillis();
+        PooledConnection expired;
+        while (true) {
+            synchronized (idle) {
+                PooledConnection last = idle.peekLast();
+                if (last == null || now - last.lastUsed < idleTimeoutMillis) {
+                    return;
+                }
+                expired = idle.pollLast();
+            }
+            discard(expired);
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        discardedCount.incrementAndGet();
+        pooled.closePhysical();
+    }
+
+    private void giveBack(PooledConnection pooled) {
+        try {
+            pooled.release();
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+            }
+            pooled.resetSession();
+        } catch (SQLException e) {
+            log.error("归还连接失败", e);
+            discard(pooled);
+            permits.release();
+            return;
+        }
+        pooled.lastUsed = System.currentTimeMillis();
+        if (closed) {
+            pooled.closePhysical();
+        } else {
+            synchronized (idle) {
+                idle.addFirst(pooled);
+            }
+        }
+        permits.release();
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 物理连接及其语句缓存
+     */
+    private class PooledConnection {
+
+        private final Connection physical;
+
+        //sql->语句,按访问顺序排列,超出容量时关闭最久未用的语句
+        private final Map<String, CachedStatement> statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= statementCacheSize) return false;
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+
+        //本次借出期间创建的、不在缓存中的语句,归还时关闭
+        private final List<Statement> opened = new ArrayList<>();
+
+        //本次借出期间借出的缓存语句,含借出后被移出缓存的,归还时收回
+        private final Set<CachedStatement> leased = new HashSet<>();
+
+        //新建连接时的会话状态,归还时恢复
+        private final boolean autoCommit;
+
+        private final boolean readOnly;
+
+        private final int isolation;
+
+        private final String catalog;
+
+        //借出期间调用过SESSION_SETTERS中的方法
+        private boolean sessionChanged;
+
+        private long lastUsed;
+
+        PooledConnection(Connection physical) throws SQLException {
+            this.physical = physical;
+            this.autoCommit = physical.getAutoCommit();
+            this.readOnly = physical.isReadOnly();
+            this.isolation = physical.getTransactionIsolation();
+            this.catalog = physical.getCatalog();
+        }
+
+        Connection borrow() {
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new ConnectionHandler(this));
+        }
+
+        PreparedStatement prepare(Connection proxy, String sql) throws SQLException {
+            if (statementCacheSize > 0) {
+                CachedStatement cached = statements.get(sql);
+                if (cached != null && !cached.inUse) {
+                    statementHits.incrementAndGet();
+                    leased.add(cached);
+                    return cached.borrow(proxy);
+                }
+                statementMisses.incrementAndGet();
+                if (cached == null) {
+                    cached = new CachedStatement(physical.prepareStatement(sql));
+                    statements.put(sql, cached);
+                    leased.add(cached);
+                    return cached.borrow(proxy);
+                }
+            }
+            //同一sql的语句正在使用,或不缓存
+            PreparedStatement ps = physical.prepareStatement(sql);
+            opened.add(ps);
+            return ps;
+        }
+
+        /**
+         * 归还时收回借出的语句;借出期间已被移出缓存的语句在此关闭
+         */
+        void release() throws SQLException {
+            try {
+                for (CachedStatement cached : leased) {
+                    cached.release();
+                }
+                for (Statement statement : opened) {
+                    statement.close();
+                }
+            } finally {
+                leased.clear();
+                opened.clear();
+            }
+        }
+
+        /**
+         * 恢复借出期间修改过的会话状态,在回滚未提交的事务之后调用
+         */
+        void resetSession() throws SQLException {
+            if (sessionChanged) {
+                if (physical.getAutoCommit() != autoCommit) physical.setAutoCommit(autoCommit);
+                if (physical.isReadOnly() != readOnly) physical.setReadOnly(readOnly);
+                if (physical.getTransactionIsolation() != isolation) physical.setTransactionIsolation(isolation);
+                if (catalog != null && !catalog.equals(physical.getCatalog())) physical.setCatalog(catalog);
+                sessionChanged = false;
+            } else if (!physical.getAutoCommit()) {
+                physical.setAutoCommit(true);
+            }
+        }
+
+        void closePhysical() {
+            for (CachedStatement cached : statements.values()) {
+                cached.evict();
+            }
+            statements.clear();
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                log.error("关闭连接失败", e);
+            }
+        }
+    }
+
+    /**
+     * 借出的连接:close时归还,prepareStatement(String)走语句缓存
+     */
+    private class ConnectionHandler implements InvocationHandler {
+
+        private final PooledConnection pooled;
+
+        private boolean returned;
+
+        ConnectionHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name)) {
+                if (!returned) {
+                    returned = true;
+                    giveBack(pooled);
+                }
+                return null;
+            }
+            if ("isClosed".equals(name)) {
+                return returned || pooled.physical.isClosed();
+            }
+            if ("equals".equals(name)) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+            }
+            if ("toString".equals(name)) {
+                return "Pooled" + pooled.physical;
+            }
+            if (returned) {
+                throw new SQLException("连接已归还连接池");
+            }
+            if ("prepareStatement".equals(name) && args.length == 1) {
+                return pooled.prepare((Connection) proxy, (String) args[0]);
+            }
+            if (SESSION_SETTERS.contains(name)) {
+                pooled.sessionChanged = true;
+            }
+            Object result = ConnectionPool.invoke(pooled.physical, method, args);
+            if (result instanceof Statement) {
+                pooled.opened.add((Statement) result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 缓存的语句,借出的语句close时清空参数与批次后留在缓存中
+     */
+    private static class CachedStatement {
+
+        private final PreparedStatement physical;
+
+        private boolean inUse;
+
+        //借出次数,旧的借出在归还后失效
+        private int lease;
+
+        //已移出缓存,借出的语句close时关闭
+        private boolean evicted;
+
+        CachedStatement(PreparedStatement physical) {
+            this.physical = physical;
+        }
+
+        PreparedStatement borrow(final Connection owner) {
+            inUse = true;
+            final int current = ++lease;
+            return (PreparedStatement) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                        String name = method.getName();
+                        boolean valid = inUse && lease == current;
+                        if ("close".equals(name)) {
+                            if (valid) release();
+                            return null;
+                        }
+                        if ("isClosed".equals(name)) {
+                            return !valid || physical.isClosed();
+                        }
+                        if ("getConnection".equals(name)) {
+                            return owner;
+                        }
+                        if ("equals".equals(name)) {
+                            return proxy == args[0];
+                        }
+                        if ("hashCode".equals(name)) {
+                            return System.identityHashCode(proxy);
+                        }
+                        if (!valid) {
+                            throw new SQLException("语句已关闭");
+                        }
+                        return ConnectionPool.invoke(physical, method, args);
+                    });
+        }
+
+        void release() throws SQLException {
+            if (!inUse) return;
+            inUse = false;
+            if (evicted) {
+                physical.close();
+            } else {
+                physical.clearParameters();
+                physical.clearBatch();
+            }
+        }
+
+        void evict() {
+            evicted = true;
+            if (inUse) return;
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                log.error("关闭语句失败", e);
+            }
+        }
+    }
+}
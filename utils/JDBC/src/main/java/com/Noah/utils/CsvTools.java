@@ -0,0 +1,546 @@
+package com.Noah.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CSV/TSV读写,列的约定与ExcelTools相同:按columnName的顺序对应各列,第一行为标题不读取,
+ * 单元格的值与getCellValue一样去除空白,缺少的列为""。
+ * <p>
+ * 读取时按区域将文件映射到内存,直接在映射的字节上查找分隔符,只有字段内容被解码为字符串;
+ * 引号按RFC 4180处理,字段内可含分隔符、换行,两个引号表示一个引号。
+ * 分隔符、引号与换行在UTF-8和GBK中都不会出现在多字节字符的中间,因此可以按字节查找;
+ * GBK的第二个字节可能是0x40以上的ASCII字符,使用GBK时分隔符须小于0x40(如逗号、制表符、分号)。
+ * <p>
+ * 写入时先在字符缓冲区中拼接,再整块编码到直接缓冲区后写入通道。
+ */
+@Slf4j
+public class CsvTools {
+
+    public static final char COMMA = ',';
+
+    public static final char TAB = '\t';
+
+    public static final Charset GBK = Charset.forName("GBK");
+
+    //标题行数
+    private static final int HEADER_ROWS = 1;
+
+    //每次映射的区域大小,一行超过该大小时按行扩大
+    private static final int REGION_SIZE = 64 * 1024 * 1024;
+
+    //写入时字符缓冲区与字节缓冲区的大小
+    private static final int CHAR_BUFFER_SIZE = 256 * 1024;
+
+    private static final int BYTE_BUFFER_SIZE = 1024 * 1024;
+
+    private static final byte QUOTE = '"';
+
+    private static final byte CR = '\r';
+
+    private static final byte LF = '\n';
+
+    /**
+     * 读取全部数据
+     *
+     * @param file       文件
+     * @param delimiter  分隔符,如COMMA、TAB
+     * @param charset    编码,如StandardCharsets.UTF_8、GBK
+     * @param columnName 列名
+     * @return 为空时，返回null
+     */
+    public static List<Map<String, Object>> readCsv(File file, char delimiter, Charset charset, final String[] columnName) {
+        final List<Map<String, Object>> resultList = new LinkedList<>();
+        int count = readCsvValues(file, delimiter, charset, columnName, (rowNum, values) -> resultList.add(ExcelTools.toRowMap(columnName, values)));
+        return count < 0 ? null : resultList;
+    }
+
+    /**
+     * 流式读取,逐行回调
+     *
+     * @param file       文件
+     * @param delimiter  分隔符
+     * @param charset    编码
+     * @param columnName 列名
+     * @param handler    行处理,rowNum为文件中的行号(记录序号),从0开始
+     * @return 处理的行数,失败时返回-1
+     */
+    public static int readCsv(File file, char delimiter, Charset charset, final String[] columnName, final ExcelTools.RowHandler handler) {
+        return readCsvValues(file, delimiter, charset, columnName, (rowNum, values) -> handler.handle(rowNum, ExcelTools.toRowMap(columnName, values)));
+    }
+
+    /**
+     * 流式读取,逐行回调原始值,不构建Map;values数组在各行之间不复用
+     *
+     * @param file       文件
+     * @param delimiter  分隔符
+     * @param charset    编码
+     * @param columnName 列名
+     * @param handler    行处理
+     * @return 处理的行数,失败时返回-1
+     */
+    public static int readCsvValues(File file, char delimiter, Charset charset, String[] columnName, ExcelTools.RowValuesHandler handler) {
+        if (delimiter >= 0x80 || (delimiter >= 0x40 && !StandardCharsets.UTF_8.equals(charset)
+                && charset.newEncoder().maxBytesPerChar() > 1)) {
+            log.error("分隔符" + delimiter + "不能用于" + charset + "编码");
+            return -1;
+        }
+        ExcelMetrics.Operation op = ExcelMetrics.start(ExcelMetrics.READ);
+        long begin = op.begin();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            op.addBytesRead(channel.size());
+            Reader reader = new Reader(channel, (byte) delimiter, charset, columnName.length);
+            int count = reader.read(handler);
+            op.end(ExcelMetrics.Phase.PARSE, begin);
+            reader.interner.report(op);
+            op.addRowsRead(count, columnName.length);
+            op.finish(true);
+            return count;
+        } catch (Exception e) {
+            log.error("读取CSV失败", e);
+        }
+        op.finish(false);
+        return -1;
+    }
+
+    /**
+     * 按映射区域逐行解析
+     */
+    private static class Reader {
+
+        private final FileChannel channel;
+
+        private final byte delimiter;
+
+        private final CharsetDecoder decoder;
+
+        private final boolean utf8;
+
+        private final int columns;
+
+        private final long size;
+
+        //按列去重,重复的值共用一个实例
+        final ValueInterner interner;
+
+        //当前映射区域及其在文件中的起始位置
+        private MappedByteBuffer region;
+
+        private long regionStart;
+
+        private boolean lastRegion;
+
+        //带引号的字段去掉转义后的内容
+        private byte[] scratch = new byte[256];
+
+        //解码结果,字节数不小于字符数
+        private char[] chars = new char[256];
+
+        private String[] values;
+
+        //当前行的字段数,以及是否为空行(空行跳过)
+        private int fieldCount;
+
+        private boolean emptyRow;
+
+        Reader(FileChannel channel, byte delimiter, Charset charset, int columns) throws IOException {
+            this.channel = channel;
+            this.delimiter = delimiter;
+            this.decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.utf8 = StandardCharsets.UTF_8.equals(charset);
+            this.columns = columns;
+            this.size = channel.size();
+            this.interner = new ValueInterner(columns);
+        }
+
+        int read(ExcelTools.RowValuesHandler handler) throws Exception {
+            if (size == 0) return 0;
+            map(0, REGION_SIZE);
+            int pos = skipBom();
+            int rowNum = 0;
+            int count = 0;
+            while (regionStart + pos < size) {
+                boolean decode = rowNum >= HEADER_ROWS;
+                values = decode ? new String[columns] : null;
+                int next = parseRow(pos, decode);
+                if (next < 0) {
+                    //区域内没有完整的一行,从行首重新映射;一行超过区域大小时扩大区域
+                    long rowStart = regionStart + pos;
+                    int length = pos == 0 ? region.limit() * 2 : REGION_SIZE;
+                    map(rowStart, length);
+                    pos = 0;
+                    continue;
+                }
+                pos = next;
+                if (decode && !emptyRow) {
+                    for (int i = fieldCount; i < columns; i++) {
+                        values[i] = "";
+                    }
+                    handler.handle(rowNum, values);
+                    count++;
+                }
+                rowNum++;
+            }
+            return count;
+        }
+
+        private void map(long start, long length) throws IOException {
+            length = Math.min(Math.min(length, Integer.MAX_VALUE), size - start);
+            region = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            regionStart = start;
+            lastRegion = start + length >= size;
+        }
+
+        private int skipBom() {
+            if (region.limit() >= 3 && region.get(0) == (byte) 0xEF && region.get(1) == (byte) 0xBB && region.get(2) == (byte) 0xBF) {
+                return 3;
+            }
+            return 0;
+        }
+
+        /**
+         * 解析一行,字段按位置填入values,超出列数的字段忽略
+         *
+         * @param pos    行首在区域中的位置
+         * @param decode 是否解码字段,标题行只定位不解码
+         * @return 下一行在区域中的位置;区域内没有完整的一行时返回-1
+         */
+        private int parseRow(int pos, boolean decode) {
+            MappedByteBuffer buf = region;
+            int limit = buf.limit();
+            fieldCount = 0;
+            emptyRow = true;
+            while (true) {
+                if (pos < limit && buf.get(pos) == QUOTE) {
+                    emptyRow = false;
+                    pos++;
+                    int len = 0;
+                    while (true) {
+                        if (pos >= limit) {
+                            //文件结尾缺少右引号时取到结尾
+                            if (!lastRegion) return -1;
+                            break;
+                        }
+                        byte b = buf.get(pos++);
+                        if (b == QUOTE) {
+                            if (pos < limit && buf.get(pos) == QUOTE) {
+                                pos++;
+                            } else if (pos >= limit && !lastRegion) {
+                                //无法判断是否为转义的引号
+                                return -1;
+                            } else {
+                                break;
+                            }
+                        }
+                        if (decode) {
+                            if (len == scratch.length) {
+                                byte[] bigger = new byte[len * 2];
+                                System.arraycopy(scratch, 0, bigger, 0, len);
+                                scratch = bigger;
+                            }
+                            scratch[len] = b;
+                        }
+                        len++;
+                    }
+                    //右引号之后到分隔符之前的内容不符合格式,忽略
+                    while (pos < limit && !isFieldEnd(buf.get(pos))) {
+                        pos++;
+                    }
+                    if (decode && fieldCount < columns) {
+                        values[fieldCount] = interner.intern(fieldCount, ExcelTools.cleanCellValue(decodeScratch(len)));
+                    }
+                } else {
+                    int start = pos;
+                    //任一字节不是ASCII时为负
+                    int bits = 0;
+                    byte b;
+                    while (pos < limit && !isFieldEnd(b = buf.get(pos))) {
+                        bits |= b;
+                        pos++;
+                    }
+                    if (pos >= limit && !lastRegion) return -1;
+                    if (pos > start) emptyRow = false;
+                    if (decode && fieldCount < columns) {
+                        values[fieldCount] = interner.intern(fieldCount, decode(buf, start, pos - start, bits >= 0));
+                    }
+                }
+                fieldCount++;
+                if (pos >= limit) {
+                    if (!lastRegion) return -1;
+                    break;
+                }
+                byte b = buf.get(pos++);
+                if (b == delimiter) {
+                    emptyRow = false;
+                    continue;
+                }
+                if (b == CR) {
+                    if (pos < limit && buf.get(pos) == LF) {
+                        pos++;
+                    } else if (pos >= limit && !lastRegion) {
+                        return -1;
+                    }
+                }
+                break;
+            }
+            fieldCount = Math.min(fieldCount, columns);
+            return pos;
+        }
+
+        private boolean isFieldEnd(byte b) {
+            return b == delimiter || b == LF || b == CR;
+        }
+
+        /**
+         * 纯ASCII的字段在各ASCII兼容编码下相同,直接按字节构造字符串,不经过解码器
+         */
+        @SuppressWarnings("deprecation")
+        private String decode(MappedByteBuffer buf, int start, int len, boolean ascii) {
+            if (len == 0) return "";
+            if (len > scratch.length) {
+                scratch = new byte[Math.max(len, scratch.length * 2)];
+            }
+            buf.position(start);
+            buf.get(scratch, 0, len);
+            return ExcelTools.cleanCellValue(ascii ? new String(scratch, 0, 0, len) : decodeScratch(len));
+        }
+
+        /**
+         * 复用同一个解码器;new String(bytes, charset)每次都会新建解码器
+         */
+        private String decodeScratch(int len) {
+            if (chars.length < len) {
+                chars = new char[Math.max(len, chars.length * 2)];
+            }
+            if (utf8) {
+                int n = decodeUtf8(len);
+                if (n >= 0) return new String(chars, 0, n);
+            }
+            CharBuffer out = CharBuffer.wrap(chars);
+            decoder.reset();
+            decoder.decode(ByteBuffer.wrap(scratch, 0, len), out, true);
+            decoder.flush(out);
+            return new String(chars, 0, out.position());
+        }
+
+        /**
+         * UTF-8解码的快速路径,遇到不合法的字节序列时返回-1,由解码器按替换规则处理
+         */
+        private int decodeUtf8(int len) {
+            byte[] src = scratch;
+            char[] dst = chars;
+            int n = 0;
+            int i = 0;
+            while (i < len) {
+                int b = src[i];
+                if (b >= 0) {
+                    dst[n++] = (char) b;
+                    i++;
+                } else if ((b & 0xE0) == 0xC0 && i + 1 < len && (src[i + 1] & 0xC0) == 0x80) {
+                    int c = ((b & 0x1F) << 6) | (src[i + 1] & 0x3F);
+                    if (c < 0x80) return -1;
+                    dst[n++] = (char) c;
+                    i += 2;
+                } else if ((b & 0xF0) == 0xE0 && i + 2 < len && (src[i + 1] & 0xC0) == 0x80 && (src[i + 2] & 0xC0) == 0x80) {
+                    int c = ((b & 0x0F) << 12) | ((src[i + 1] & 0x3F) << 6) | (src[i + 2] & 0x3F);
+                    if (c < 0x800 || Character.isSurrogate((char) c)) return -1;
+                    dst[n++] = (char) c;
+                    i += 3;
+                } else {
+                    //四字节序列(代理对)较少见,交给解码器
+                    return -1;
+                }
+            }
+            return n;
+        }
+    }
+
+    /**
+     * 写入文件,第一行为标题
+     *
+     * @param list            数据源
+     * @param columnName      Map中存放的key;生成列的顺序
+     * @param columnAlignName 标题行显示的列的别名
+     * @param delimiter       分隔符
+     * @param charset         编码
+     * @param file            文件,存在时覆盖
+     * @return 是否成功
+     */
+    public static boolean writeCsv(List<Map<String, Object>> list, String[] columnName, String[] columnAlignName, char delimiter, Charset charset, File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return writeCsv(list.iterator(), columnName, columnAlignName, delimiter, charset, channel);
+        } catch (IOException e) {
+            log.error("文件写入异常", e);
+        }
+        return false;
+    }
+
+    /**
+     * 流式写入通道,第一行为标题
+     *
+     * @param rows            数据源,逐行读取
+     * @param columnName      Map中存放的key;生成列的顺序
+     * @param columnAlignName 标题行显示的列的别名
+     * @param delimiter       分隔符
+     * @param charset         编码
+     * @param channel         通道,由调用方关闭
+     * @return 是否成功
+     */
+    public static boolean writeCsv(Iterator<Map<String, Object>> rows, String[] columnName, String[] columnAlignName, char delimiter, Charset charset, WritableByteChannel channel) {
+        ExcelMetrics.Operation op = ExcelMetrics.start(ExcelMetrics.EXPORT);
+        long begin = op.begin();
+        try {
+            Writer writer = new Writer(channel, delimiter, charset);
+            writer.writeRow(columnAlignName);
+            String[] values = new String[columnName.length];
+            int rowNum = 0;
+            while (rows.hasNext()) {
+                Map<String, Object> map = rows.next();
+                for (int j = 0; j < columnName.length; j++) {
+                    Object tmp = map.get(columnName[j]);
+                    values[j] = tmp == null ? null : String.valueOf(tmp);
+                }
+                writer.writeRow(values);
+                rowNum++;
+            }
+            writer.flush();
+            op.end(ExcelMetrics.Phase.CONVERT, begin);
+            op.addRowsWritten(rowNum, columnName.length);
+            op.addBytesWritten(writer.written);
+            op.finish(true);
+            return true;
+        } catch (IOException e) {
+            log.error("文件写入异常", e);
+        }
+        op.finish(false);
+        return false;
+    }
+
+    /**
+     * 字符先写入字符缓冲区,满后编码到直接缓冲区,字节缓冲区满后写入通道
+     */
+    private static class Writer {
+
+        private final WritableByteChannel channel;
+
+        private final char delimiter;
+
+        private final CharsetEncoder encoder;
+
+        private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(BYTE_BUFFER_SIZE);
+
+        private long written;
+
+        Writer(WritableByteChannel channel, char delimiter, Charset charset) {
+            this.channel = channel;
+            this.delimiter = delimiter;
+            this.encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        void writeRow(String[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) put(delimiter);
+                if (values[i] != null) writeField(values[i]);
+            }
+            put('\r');
+            put('\n');
+        }
+
+        /**
+         * 含分隔符、引号或换行时加引号,引号写两次
+         */
+        private void writeField(String value) throws IOException {
+            int len = value.length();
+            boolean quote = false;
+            for (int i = 0; i < len; i++) {
+                char c = value.charAt(i);
+                if (c == delimiter || c == '"' || c == '\r' || c == '\n') {
+                    quote = true;
+                    break;
+                }
+            }
+            if (!quote) {
+                put(value);
+                return;
+            }
+            put('"');
+            for (int i = 0; i < len; i++) {
+                char c = value.charAt(i);
+                if (c == '"') put('"');
+                put(c);
+            }
+            put('"');
+        }
+
+        private void put(char c) throws IOException {
+            if (!chars.hasRemaining()) encode(false);
+            chars.put(c);
+        }
+
+        private void put(String value) throws IOException {
+            int off = 0;
+            int len = value.length();
+            while (off < len) {
+                if (!chars.hasRemaining()) encode(false);
+                int n = Math.min(len - off, chars.remaining());
+                chars.put(value, off, off + n);
+                off += n;
+            }
+        }
+
+        private void encode(boolean endOfInput) throws IOException {
+            chars.flip();
+            while (true) {
+                CoderResult result = encoder.encode(chars, bytes, endOfInput);
+                if (result.isOverflow()) {
+                    drain();
+                } else {
+                    break;
+                }
+            }
+            //保留未编码完的代理对
+            chars.compact();
+        }
+
+        void flush() throws IOException {
+            encode(true);
+            while (encoder.flush(bytes).isOverflow()) {
+                drain();
+            }
+            drain();
+        }
+
+        private void drain() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) {
+                written += channel.write(bytes);
+            }
+            bytes.clear();
+        }
+    }
+}
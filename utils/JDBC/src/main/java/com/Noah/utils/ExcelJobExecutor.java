@@ -0,0 +1,315 @@
+package com.Noah.utils;
+
+import lombok.Data;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 异步执行读取、导出与导入,按估算的堆内存占用控制并发
+ * <p>
+ * 提交任务时按文件大小与格式估算其堆内存峰值,已准入任务的估算之和不超过memoryBudget,
+ * 同时运行的任务数不超过线程数。超出时按提交顺序排队,先提交的任务未准入前,后提交的小任务也不越过它,
+ * 大文件不会一直等不到内存。排队数达到maxQueued,或单个任务的估算超过整个预算时立即拒绝,
+ * 返回的CompletableFuture以RejectedExecutionException异常完成。
+ * <p>
+ * 任务结果与对应的同步方法一致,失败时同样为null、-1或false。估算只是近似值,
+ * 预算应小于-Xmx减去应用自身常驻的内存,并留出余量。
+ */
+public class ExcelJobExecutor implements Closeable {
+
+    public static final int DEFAULT_MAX_QUEUED = 100;
+
+    //流式处理的固定开销:队列中的行、SXSSF窗口、读写缓冲等
+    public static final long STREAM_BASE_BYTES = 16L << 20;
+
+    //整表读入List<Map>时,每字节文件的堆占用,按实测取整;xls含同时存在的HSSFWorkbook
+    private static final int XLSX_LIST_FACTOR = 20;
+
+    private static final int XLS_LIST_FACTOR = 13;
+
+    private static final int CSV_LIST_FACTOR = 14;
+
+    //流式读取时常驻的共享字符串表,xlsx为解压后的sharedStrings,xls为SST记录
+    private static final int XLSX_STREAM_FACTOR = 2;
+
+    private static final int XLS_STREAM_FACTOR = 1;
+
+    //HSSFWorkbook中每个单元格的堆占用,实测约210字节
+    private static final int HSSF_CELL_BYTES = 256;
+
+    private final ExecutorService executor;
+
+    private final int threads;
+
+    private final long memoryBudget;
+
+    private final int maxQueued;
+
+    //未准入的任务,按提交顺序
+    private final Deque<Job<?>> queue = new ArrayDeque<>();
+
+    private long reservedBytes;
+
+    private int running;
+
+    private long submittedCount;
+
+    private long rejectedCount;
+
+    private boolean closed;
+
+    @Data
+    public static class Metrics {
+
+        private long submittedCount;
+
+        private long rejectedCount;
+
+        private int queuedCount;
+
+        private int runningCount;
+
+        //运行中任务的估算之和
+        private long reservedBytes;
+
+        private long memoryBudget;
+    }
+
+    private static class Job<T> {
+
+        final long bytes;
+
+        final Callable<T> task;
+
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Job(long bytes, Callable<T> task) {
+            this.bytes = bytes;
+            this.task = task;
+        }
+    }
+
+    public ExcelJobExecutor(int threads, long memoryBudget) {
+        this(threads, memoryBudget, DEFAULT_MAX_QUEUED);
+    }
+
+    /**
+     * @param threads      同时运行的任务数
+     * @param memoryBudget 已准入任务估算堆占用之和的上限
+     * @param maxQueued    最多排队的任务数
+     */
+    public ExcelJobExecutor(int threads, long memoryBudget, int maxQueued) {
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.threads = threads;
+        this.memoryBudget = memoryBudget;
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * 整表读取,见ExcelTools.readExcel
+     */
+    public CompletableFuture<List<Map<String, Object>>> readExcel(final File file, final String ext, final String sheetName,
+                                                                  final int sheetIdx, final String[] columnName) {
+        return submit(estimateRead(file, ext),
+                () -> ExcelTools.readExcel(file, ext, sheetName, sheetIdx, columnName));
+    }
+
+    /**
+     * 流式读取,逐行回调,见ExcelTools.readExcel
+     */
+    public CompletableFuture<Integer> readExcel(final File file, final String ext, final String sheetName, final int sheetIdx,
+                                                final String[] columnName, final ExcelTools.RowHandler handler) {
+        return submit(estimateStream(file, ext),
+                () -> ExcelTools.readExcel(file, ext, sheetName, sheetIdx, columnName, handler));
+    }
+
+    /**
+     * 整表读取csv,见CsvTools.readCsv
+     */
+    public CompletableFuture<List<Map<String, Object>>> readCsv(final File file, final char delimiter, final Charset charset,
+                                                                final String[] columnName) {
+        return submit(file.length() * CSV_LIST_FACTOR,
+                () -> CsvTools.readCsv(file, delimiter, charset, columnName));
+    }
+
+    /**
+     * 生成并写出Excel;xls在内存中生成HSSFWorkbook,xlsx流式生成
+     *
+     * @param list            数据
+     * @param columnName      列名
+     * @param columnAlignName 显示的列名
+     * @param ext             xls或xlsx
+     * @param out             输出流,由调用方关闭
+     * @return 是否成功
+     */
+    public CompletableFuture<Boolean> writeExcel(final List<Map<String, Object>> list, final String[] columnName,
+                                                 final String[] columnAlignName, String ext, final OutputStream out) {
+        if ("xls".equals(ext)) {
+            return submit(estimateHSSF(list.size(), columnName.length), () -> {
+                HSSFWorkbook wb = ExcelTools.getHSSFWookbook(list, columnName, columnAlignName);
+                return wb != null && ExcelTools.writeExcel(wb, out);
+            });
+        }
+        return submit(STREAM_BASE_BYTES,
+                () -> ExcelTools.writeXSSFWookbook(list.iterator(), columnName, columnAlignName, null, out));
+    }
+
+    /**
+     * 导入,见ImportPipeline.run
+     */
+    public CompletableFuture<ImportPipeline.PipelineResult> runImport(final ImportPipeline pipeline, final File file,
+                                                                      final String ext, final String sheetName,
+                                                                      final int sheetIdx, final String[] columnName,
+                                                                      final ImportPipeline.RowProcessor processor,
+                                                                      final String[] reportColumn,
+                                                                      final String[] reportColumnAlign,
+                                                                      final OutputStream report) {
+        return submit(estimateStream(file, ext), () -> pipeline.run(file, ext, sheetName, sheetIdx, columnName,
+                processor, reportColumn, reportColumnAlign, report));
+    }
+
+    /**
+     * 提交任务
+     *
+     * @param estimatedBytes 估算的堆内存峰值
+     * @param task           任务
+     * @return 任务结果;被拒绝时以RejectedExecutionException异常完成,任务抛出的异常同样以异常完成
+     */
+    public synchronized <T> CompletableFuture<T> submit(long estimatedBytes, Callable<T> task) {
+        Job<T> job = new Job<>(estimatedBytes, task);
+        submittedCount++;
+        String reason = null;
+        if (closed) {
+            reason = "已关闭";
+        } else if (estimatedBytes > memoryBudget) {
+            reason = "估算内存" + (estimatedBytes >> 20) + "MB超出预算" + (memoryBudget >> 20) + "MB";
+        } else if (queue.size() >= maxQueued) {
+            reason = "排队任务已达" + maxQueued + "个";
+        }
+        if (reason != null) {
+            rejectedCount++;
+            job.future.completeExceptionally(new RejectedExecutionException(reason));
+            return job.future;
+        }
+        queue.addLast(job);
+        drain();
+        return job.future;
+    }
+
+    /**
+     * 整表读入List&lt;Map&gt;的堆内存估算
+     */
+    public static long estimateRead(File file, String ext) {
+        String detected = ExcelTools.detectExt(file);
+        if (detected != null) ext = detected;
+        long size = file.length();
+        if ("xlsx".equals(ext)) return size * XLSX_LIST_FACTOR;
+        if ("xls".equals(ext)) return size * XLS_LIST_FACTOR;
+        return size * CSV_LIST_FACTOR;
+    }
+
+    /**
+     * 流式读取与导入的堆内存估算
+     */
+    public static long estimateStream(File file, String ext) {
+        String detected = ExcelTools.detectExt(file);
+        if (detected != null) ext = detected;
+        long size = file.length();
+        if ("xlsx".equals(ext)) return STREAM_BASE_BYTES + size * XLSX_STREAM_FACTOR;
+        if ("xls".equals(ext)) return STREAM_BASE_BYTES + size * XLS_STREAM_FACTOR;
+        return STREAM_BASE_BYTES;
+    }
+
+    /**
+     * 在内存中生成HSSFWorkbook的堆内存估算,含标题行
+     */
+    public static long estimateHSSF(int rows, int columns) {
+        return (long) (rows + 1) * columns * HSSF_CELL_BYTES;
+    }
+
+    public synchronized Metrics getMetrics() {
+        Metrics metrics = new Metrics();
+        metrics.setSubmittedCount(submittedCount);
+        metrics.setRejectedCount(rejectedCount);
+        metrics.setQueuedCount(queue.size());
+        metrics.setRunningCount(running);
+        metrics.setReservedBytes(reservedBytes);
+        metrics.setMemoryBudget(memoryBudget);
+        return metrics;
+    }
+
+    /**
+     * 拒绝排队中的任务,运行中的任务继续执行完
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            Job<?> job;
+            while ((job = queue.poll()) != null) {
+                job.future.completeExceptionally(new RejectedExecutionException("已关闭"));
+            }
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * 按顺序准入队首的任务,直到线程或内存预算不足;调用时持有锁
+     */
+    private void drain() {
+        while (!queue.isEmpty()) {
+            Job<?> head = queue.peekFirst();
+            //排队中被调用方取消的任务
+            if (head.future.isDone()) {
+                queue.pollFirst();
+                continue;
+            }
+            if (running >= threads || reservedBytes + head.bytes > memoryBudget) {
+                return;
+            }
+            queue.pollFirst();
+            running++;
+            reservedBytes += head.bytes;
+            final Job<?> job = head;
+            executor.execute(() -> run(job));
+        }
+    }
+
+    /**
+     * 执行任务,先归还预算再完成future,调用方在结果回调中提交的任务可以立即准入
+     */
+    private <T> void run(Job<T> job) {
+        T result = null;
+        Throwable failure = null;
+        try {
+            if (!job.future.isDone()) {
+                result = job.task.call();
+            }
+        } catch (Throwable e) {
+            failure = e;
+        }
+        synchronized (this) {
+            running--;
+            reservedBytes -= job.bytes;
+            drain();
+        }
+        if (failure != null) {
+            job.future.completeExceptionally(failure);
+        } else {
+            job.future.complete(result);
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.Noah.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 读取、导出、写入与导入操作的度量
+ * <p>
+ * 每次操作记录行数、单元格数、读写字节数、各阶段耗时、读取时按列去重的命中率与观察到的堆使用峰值,操作结束时通知监听器。
+ * 导入时读取、写入数据库与生成报告在不同线程中进行,各阶段耗时为各线程累计,合计可能大于总耗时。
+ * <p>
+ * 没有监听器时start返回不做任何记录的Operation.NONE,各方法只判断一次标志;
+ * 逐行的计时只在启用时通过包装回调加入,未启用时读写路径上没有额外的逐行开销。
+ * <p>
+ * 通过registerMBean注册JMX,按操作类型在com.Noah.utils:type=ExcelMetrics下汇总。
+ */
+@Slf4j
+public final class ExcelMetrics {
+
+    //操作类型
+    public static final String READ = "read";
+
+    //在内存中生成工作簿,或流式生成并写出
+    public static final String EXPORT = "export";
+
+    //将已生成的工作簿写入文件或输出流
+    public static final String WRITE = "write";
+
+    public static final String IMPORT = "import";
+
+    public enum Phase {
+        //打开文件,定位sheet,载入共享字符串表或构建HSSFWorkbook
+        OPEN,
+        //解析行与解码单元格
+        PARSE,
+        //行转换为Map或bean、写入单元格,以及回调处理
+        CONVERT,
+        //序列化输出
+        WRITE,
+        //设置列宽
+        AUTOSIZE,
+        //executeBatch
+        DB_BATCH
+    }
+
+    /**
+     * 操作结束时回调,在执行操作的线程中调用,应尽快返回
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void onComplete(Operation operation);
+    }
+
+    private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private static volatile boolean enabled;
+
+    private static JmxMetricsListener jmxListener;
+
+    private ExcelMetrics() {
+    }
+
+    public static void addListener(Listener listener) {
+        LISTENERS.add(listener);
+        enabled = true;
+    }
+
+    public static void removeListener(Listener listener) {
+        LISTENERS.remove(listener);
+        enabled = !LISTENERS.isEmpty();
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 注册JMX监听器,重复调用返回同一个
+     */
+    public static synchronized JmxMetricsListener registerMBean() {
+        if (jmxListener == null) {
+            jmxListener = new JmxMetricsListener();
+            addListener(jmxListener);
+        }
+        return jmxListener;
+    }
+
+    /**
+     * 开始一次操作,未启用时返回Operation.NONE
+     */
+    public static Operation start(String name) {
+        return enabled ? new Operation(name) : Operation.NONE;
+    }
+
+    /**
+     * 一次操作的度量,可在多个线程中同时记录
+     */
+    public static final class Operation {
+
+        public static final Operation NONE = new Operation(null);
+
+        //每隔多少行采样一次堆使用量
+        private static final int HEAP_SAMPLE_ROWS = 4096;
+
+        private final String name;
+
+        private final boolean active;
+
+        private final long startNanos;
+
+        private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+
+        private final AtomicLong rowsRead = new AtomicLong();
+
+        private final AtomicLong rowsWritten = new AtomicLong();
+
+        private final AtomicLong cellsRead = new AtomicLong();
+
+        private final AtomicLong cellsWritten = new AtomicLong();
+
+        private final AtomicLong bytesRead = new AtomicLong();
+
+        private final AtomicLong bytesWritten = new AtomicLong();
+
+        //读取时按列去重的查找与命中次数
+        private final AtomicLong internLookups = new AtomicLong();
+
+        private final AtomicLong internHits = new AtomicLong();
+
+        private final AtomicLong peakHeap = new AtomicLong();
+
+        private volatile long elapsedNanos;
+
+        private volatile boolean success;
+
+        private Operation(String name) {
+            this.name = name;
+            this.active = name != null;
+            this.startNanos = active ? System.nanoTime() : 0;
+            if (active) sampleHeap();
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        /**
+         * 阶段开始,返回传给end的时间戳
+         */
+        public long begin() {
+            return active ? System.nanoTime() : 0;
+        }
+
+        /**
+         * 阶段结束,累加耗时并采样堆使用量
+         */
+        public void end(Phase phase, long begin) {
+            if (!active) return;
+            phaseNanos.addAndGet(phase.ordinal(), System.nanoTime() - begin);
+            sampleHeap();
+        }
+
+        public void addPhaseNanos(Phase phase, long nanos) {
+            if (active) phaseNanos.addAndGet(phase.ordinal(), nanos);
+        }
+
+        public void addRowsRead(long rows, int columns) {
+            if (!active) return;
+            rowsRead.addAndGet(rows);
+            cellsRead.addAndGet(rows * columns);
+        }
+
+        public void addRowsWritten(long rows, int columns) {
+            if (!active) return;
+            rowsWritten.addAndGet(rows);
+            cellsWritten.addAndGet(rows * columns);
+        }
+
+        public void addBytesRead(long bytes) {
+            if (active) bytesRead.addAndGet(bytes);
+        }
+
+        public void addBytesWritten(long bytes) {
+            if (active) bytesWritten.addAndGet(bytes);
+        }
+
+        public void addInterned(long lookups, long hits) {
+            if (!active) return;
+            internLookups.addAndGet(lookups);
+            internHits.addAndGet(hits);
+        }
+
+        /**
+         * 逐行回调中调用,每HEAP_SAMPLE_ROWS行采样一次堆使用量
+         */
+        public void rowProcessed(long rowIndex) {
+            if (active && rowIndex % HEAP_SAMPLE_ROWS == 0) sampleHeap();
+        }
+
+        /**
+         * 操作结束,通知监听器;每个操作只调用一次
+         */
+        public void finish(boolean success) {
+            if (!active) return;
+            this.elapsedNanos = System.nanoTime() - startNanos;
+            this.success = success;
+            sampleHeap();
+            for (Listener listener : LISTENERS) {
+                try {
+                    listener.onComplete(this);
+                } catch (RuntimeException e) {
+                    log.error("度量监听器异常", e);
+                }
+            }
+        }
+
+        /**
+         * 堆使用量为整个JVM的,在阶段结束与逐行采样时取最大值,并发操作之间互相包含
+         */
+        private void sampleHeap() {
+            Runtime runtime = Runtime.getRuntime();
+            long used = runtime.totalMemory() - runtime.freeMemory();
+            long peak;
+            while (used > (peak = peakHeap.get()) && !peakHeap.compareAndSet(peak, used)) {
+                //重试
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedNanos / 1000000;
+        }
+
+        public long getPhaseMillis(Phase phase) {
+            return phaseNanos.get(phase.ordinal()) / 1000000;
+        }
+
+        public long getRowsRead() {
+            return rowsRead.get();
+        }
+
+        public long getRowsWritten() {
+            return rowsWritten.get();
+        }
+
+        public long getCellsRead() {
+            return cellsRead.get();
+        }
+
+        public long getCellsWritten() {
+            return cellsWritten.get();
+        }
+
+        public long getBytesRead() {
+            return bytesRead.get();
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten.get();
+        }
+
+        public long getInternLookups() {
+            return internLookups.get();
+        }
+
+        public long getInternHits() {
+            return internHits.get();
+        }
+
+        /**
+         * 去重的命中率,即复用已有实例的单元格占比
+         */
+        public double getInternHitRate() {
+            long lookups = internLookups.get();
+            return lookups == 0 ? 0 : (double) internHits.get() / lookups;
+        }
+
+        public long getPeakHeapBytes() {
+            return peakHeap.get();
+        }
+
+        /**
+         * 每秒处理的行数,导入时读取与报告的行数相同,取较大者
+         */
+        public long getRowsPerSecond() {
+            long rows = Math.max(rowsRead.get(), rowsWritten.get());
+            return elapsedNanos <= 0 ? 0 : rows * 1000000000L / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(name).append("(success=").append(success)
+                    .append(", elapsed=").append(getElapsedMillis()).append("ms")
+                    .append(", rowsRead=").append(getRowsRead())
+                    .append(", rowsWritten=").append(getRowsWritten())
+                    .append(", rows/s=").append(getRowsPerSecond())
+                    .append(", cellsRead=").append(getCellsRead())
+                    .append(", cellsWritten=").append(getCellsWritten())
+                    .append(", bytesRead=").append(getBytesRead())
+                    .append(", bytesWritten=").append(getBytesWritten());
+            for (Phase phase : Phase.values()) {
+                long millis = getPhaseMillis(phase);
+                if (millis > 0) {
+                    sb.append(", ").append(phase.name().toLowerCase()).append('=').append(millis).append("ms");
+                }
+            }
+            if (getInternLookups() > 0) {
+                sb.append(", internHitRate=").append(Math.round(getInternHitRate() * 1000) / 10d).append('%');
+            }
+            return sb.append(", peakHeap=").append(getPeakHeapBytes() >> 20).append("MB)").toString();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.Noah.utils;
+
+import java.util.Map;
+
+/**
+ * 某一类操作的累计度量,注册为com.Noah.utils:type=ExcelMetrics,name=操作类型
+ */
+public interface ExcelMetricsMXBean {
+
+    long getOperationCount();
+
+    long getFailureCount();
+
+    long getRowsRead();
+
+    long getRowsWritten();
+
+    long getCellsRead();
+
+    long getCellsWritten();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    long getTotalMillis();
+
+    //各阶段累计耗时,毫秒
+    Map<String, Long> getPhaseMillis();
+
+    //读取时按列去重的查找次数、命中次数与命中率
+    long getInternLookups();
+
+    long getInternHits();
+
+    double getInternHitRate();
+
+    //单次操作观察到的最大堆使用量
+    long getMaxPeakHeapBytes();
+
+    long getLastRowsPerSecond();
+
+    String getLastOperation();
+
+    void reset();
+}
@@ -4,18 +4,37 @@ import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.hssf.usermodel.HSSFCell;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.omg.CORBA.UserException;
 
 import java.io.*;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.text.DecimalFormat;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @Slf4j
 public class ExcelTools {
@@ -23,12 +42,46 @@ public class ExcelTools {
     //从第几行开始读取，默认从第一行读取
     private static int readStartRowPos = 1;
 
+    //2^53以内的double可以精确转为long
+    private static final double LONG_EXACT_BOUND = 9007199254740992d;
+
+    //OLE2复合文档(xls)与ZIP(xlsx)的文件头
+    private static final byte[] OLE2_SIGNATURE = {(byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1};
+
+    private static final byte[] ZIP_SIGNATURE = {'P', 'K', 0x03, 0x04};
+
+    //DecimalFormat非线程安全,每个线程缓存一个
+    private static final ThreadLocal<DecimalFormat> NUMERIC_FORMAT = ThreadLocal.withInitial(() -> new DecimalFormat("0"));
+
+    //绝对值小于10^15的整数写为数值单元格不丢失精度
+    private static final long MAX_EXACT_LONG = 1000000000000000L;
+
+    private static final BigInteger MAX_EXACT_INTEGER = BigInteger.valueOf(MAX_EXACT_LONG);
+
     //数据处理逻辑
     @FunctionalInterface
     public interface LogicCalculator {
         LogicResult calculate(List<Map<String, Object>> resultList, String resultKey);
     }
 
+    //流式读取时逐行处理数据,rowNum为sheet中的行号,从0开始
+    @FunctionalInterface
+    public interface RowHandler {
+        void handle(int rowNum, Map<String, Object> row) throws Exception;
+    }
+
+    //流式读取时逐行处理原始值,values按columnName顺序排列,不构建Map
+    @FunctionalInterface
+    public interface RowValuesHandler {
+        void handle(int rowNum, String[] values) throws Exception;
+    }
+
+    //流式读取时逐行处理原始值,并带上数值单元格未经取整的值(其余单元格为NaN)及是否为日期格式,用于按类型映射
+    @FunctionalInterface
+    interface RowCellsHandler {
+        void handle(int rowNum, String[] values, double[] numbers, boolean[] dates) throws Exception;
+    }
+
     @Data
     public static class LogicResult {
 
@@ -57,56 +110,255 @@ public class ExcelTools {
 
     /**
      * 写入本地Excel文件
+     * <p>
+     * 通过FileChannel与池化的直接缓冲区写入,文件不存在时创建,存在时覆盖
      *
      * @param file 文件
      * @param wb   数据
      */
-    public static void writeLocalFile(File file, HSSFWorkbook wb) {
-        //判断建立文件
-        if (!file.exists()) {
-            try {
-                file.createNewFile();
-            } catch (IOException e) {
-                //创建文件失败
-                log.error("创建文件失败", e);
-                return;
-            }
+    public static void writeLocalFile(File file, Workbook wb) {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeExcel(wb, channel);
+        } catch (IOException e) {
+            log.error("文件写入异常", e);
         }
-        //使用true，即进行append file
-        FileOutputStream fileOutputStream = null;
+    }
+
+    /**
+     * 将工作簿写入输出流
+     *
+     * @param wb  数据
+     * @param out 输出流,由调用方关闭
+     * @return 是否成功
+     */
+    public static boolean writeExcel(Workbook wb, OutputStream out) {
+        ExcelMetrics.Operation op = ExcelMetrics.start(ExcelMetrics.WRITE);
         try {
-            fileOutputStream = new FileOutputStream(file, false);
-            wb.write(fileOutputStream);
-            fileOutputStream.flush();
-        } catch (Exception e) {
+            write(wb, out, op);
+            out.flush();
+            op.finish(true);
+            return true;
+        } catch (IOException e) {
             log.error("文件写入异常", e);
-        } finally {
-            if (fileOutputStream != null) {
-                try {
-                    fileOutputStream.close();
-                } catch (IOException e) {
-                    //nothing to do
-                }
+        }
+        op.finish(false);
+        return false;
+    }
+
+    /**
+     * 将工作簿写入通道,经池化的直接缓冲区整块写入
+     *
+     * @param wb      数据
+     * @param channel 通道,由调用方关闭
+     * @return 是否成功
+     */
+    public static boolean writeExcel(Workbook wb, WritableByteChannel channel) {
+        ExcelMetrics.Operation op = ExcelMetrics.start(ExcelMetrics.WRITE);
+        try {
+            OutputStream out = new ChannelOutputStream(new UnclosableChannel(channel));
+            try {
+                write(wb, out, op);
+            } finally {
+                out.close();
             }
+            op.finish(true);
+            return true;
+        } catch (IOException e) {
+            log.error("文件写入异常", e);
         }
+        op.finish(false);
+        return false;
+    }
+
+    /**
+     * 序列化工作簿,度量启用时统计耗时与写出的字节数
+     */
+    private static void write(Workbook wb, OutputStream out, ExcelMetrics.Operation op) throws IOException {
+        long begin = op.begin();
+        if (op.isActive()) {
+            CountingOutputStream counting = new CountingOutputStream(out);
+            wb.write(counting);
+            op.addBytesWritten(counting.getCount());
+        } else {
+            wb.write(out);
+        }
+        op.end(ExcelMetrics.Phase.WRITE, begin);
+    }
+
+    /**
+     * 通道包装为输出流,使用池化的直接缓冲区;关闭输出流时关闭通道。
+     * 用于流式写入的方法向文件或网络通道输出
+     */
+    public static OutputStream newOutputStream(WritableByteChannel channel) {
+        return new ChannelOutputStream(channel);
     }
 
     /**
      * 获取文件的字节数组
+     * <p>
+     * 仅在确实需要字节数组时使用,写文件或响应时使用writeLocalFile/writeExcel直接输出。
+     * 写入分块缓冲,最后只拷贝一次到结果数组,不经过ByteArrayOutputStream的反复扩容
      *
-     * @param hssfWorkbook 表信息
+     * @param wb 表信息
      * @return 字节数组
      */
-    public static byte[] getExcelBytes(HSSFWorkbook hssfWorkbook) {
-        byte[] bytes = new byte[0];
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    public static byte[] getExcelBytes(Workbook wb) {
+        ExcelMetrics.Operation op = ExcelMetrics.start(ExcelMetrics.WRITE);
+        BlockOutputStream out = new BlockOutputStream();
         try {
-            hssfWorkbook.write(byteArrayOutputStream);
-            bytes = byteArrayOutputStream.toByteArray();
+            write(wb, out, op);
+            byte[] bytes = out.toByteArray();
+            op.finish(true);
+            return bytes;
         } catch (IOException e) {
             log.error("处理Excel文件失败", e);
         }
-        return bytes;
+        op.finish(false);
+        return new byte[0];
+    }
+
+    /**
+     * 分块的内存输出流,块大小固定,扩容时不拷贝已写入的数据
+     */
+    private static class BlockOutputStream extends OutputStream {
+
+        private final List<byte[]> blocks = new ArrayList<>();
+
+        private byte[] current;
+
+        private int pos;
+
+        private int size;
+
+        @Override
+        public void write(int b) {
+            if (current == null || pos == current.length) {
+                nextBlock();
+            }
+            current[pos++] = (byte) b;
+            size++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            while (len > 0) {
+                if (current == null || pos == current.length) {
+                    nextBlock();
+                }
+                int n = Math.min(len, current.length - pos);
+                System.arraycopy(b, off, current, pos, n);
+                pos += n;
+                off += n;
+                len -= n;
+                size += n;
+            }
+        }
+
+        private void nextBlock() {
+            current = new byte[ChannelOutputStream.BUFFER_SIZE];
+            blocks.add(current);
+            pos = 0;
+        }
+
+        byte[] toByteArray() {
+            byte[] result = new byte[size];
+            int offset = 0;
+            for (byte[] block : blocks) {
+                int n = Math.min(block.length, size - offset);
+                System.arraycopy(block, 0, result, offset, n);
+                offset += n;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 关闭时不关闭原通道,由调用方管理其生命周期
+     */
+    private static class UnclosableChannel implements WritableByteChannel {
+
+        private final WritableByteChannel channel;
+
+        UnclosableChannel(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+            //由调用方关闭
+        }
+    }
+
+    /**
+     * 根据文件头判断格式,不依赖扩展名
+     *
+     * @param file 文件
+     * @return OLE2文件返回xls,ZIP文件返回xlsx,无法识别时返回null
+     */
+    public static String detectExt(File file) {
+        byte[] header = new byte[8];
+        int n = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while (n < header.length && (read = in.read(header, n, header.length - n)) > 0) {
+                n += read;
+            }
+        } catch (IOException e) {
+            log.error("读取文件头失败", e);
+            return null;
+        }
+        if (n == header.length && startsWith(header, OLE2_SIGNATURE)) {
+            return "xls";
+        }
+        if (n >= ZIP_SIGNATURE.length && startsWith(header, ZIP_SIGNATURE)) {
+            return "xlsx";
+        }
+        return null;
+    }
+
+    /**
+     * 以文件头为准确定读取方式,文件头无法识别时使用传入的扩展名
+     */
+    private static String resolveExt(File file, String ext) {
+        String detected = detectExt(file);
+        if (detected == null) {
+            return ext;
+        }
+        if (ext != null && !detected.equals(ext)) {
+            log.info("读取Excel:文件扩展名为" + ext + "，按文件头以" + detected + "方式读取");
+        }
+        return detected;
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 按文件头判断格式后读取
+     *
+     * @param path       路径
+     * @param sheetName  读取的sheet名;为空null时,按照sheetIdx读取
+     * @param sheetIdx   读取的sheet页号,从0开始
+     * @param columnName 列名
+     * @return 为空时，返回null
+     */
+    public static List<Map<String, Object>> readExcel(Path path, String sheetName, int sheetIdx, String[] columnName) {
+        return readExcel(path.toFile(), null, sheetName, sheetIdx, columnName);
     }
 
     /**
@@ -145,39 +397,25 @@ public class ExcelTools {
      * @param columnName 列名
      * @return 为空时，返回null
      */
-    private static List<Map<String, Object>> readExcel(File file, String ext, String sheetName, int sheetIdx, String[] columnName) {
+    static List<Map<String, Object>> readExcel(File file, String ext, String sheetName, int sheetIdx, String[] columnName) {
+        ExcelMetrics.Operation op = ExcelMetrics.start(ExcelMetrics.READ);
+        List<Map<String, Object>> resultList = null;
         try {
+            ext = resolveExt(file, ext);
+            if (op.isActive()) op.addBytesRead(file.length());
             if ("xls".equals(ext)) { // 使用xls方式读取
-                return readExcel_xls(file, sheetName, sheetIdx, columnName);
+                resultList = readExcel_xls(file, sheetName, sheetIdx, columnName, op);
             } else if ("xlsx".equals(ext)) { // 使用xlsx方式读取
-                return readExcel_xlsx(file, sheetName, sheetIdx, columnName);
-            } else { // 依次尝试xls、xlsx方式读取
-                log.info("读取Excel:您要操作的文件非excel扩展名，正在尝试以xls方式读取...");
-                try {
-                    return readExcel_xls(file, sheetName, sheetIdx, columnName);
-                } catch (Exception e1) {
-                    log.info("读取Excel:尝试以xls方式读取，结果失败！，正在尝试以xlsx方式读取...");
-                    try {
-                        return readExcel_xlsx(file, sheetName, sheetIdx, columnName);
-                    } catch (Exception e2) {
-                        log.info("读取Excel:尝试以xls方式读取，结果失败！\n请您确保您的文件是Excel文件，并且无损，然后再试。");
-                        return null;
-                    }
-                }
+                resultList = readExcel_xlsx(file, sheetName, sheetIdx, columnName, op);
+            } else {
+                log.info("读取Excel:无法识别的文件格式，请您确保您的文件是Excel文件，并且无损，然后再试。");
             }
         } catch (Exception e) {
-            StringWriter sw = new StringWriter();
-            PrintWriter pw = new PrintWriter(sw);
-            e.printStackTrace(pw);
-            log.info(sw.toString());
-            try {
-                sw.close();
-                pw.close();
-            } catch (IOException e1) {
-                log.error("异常", e1);
-            }
+            log.error("读取Excel失败", e);
         }
-        return null;
+        if (resultList != null) op.addRowsRead(resultList.size(), columnName.length);
+        op.finish(resultList != null);
+        return resultList;
     }
 
     /**
@@ -187,57 +425,402 @@ public class ExcelTools {
      * @param sheetName
      * @param sheetIdx
      * @param columnName
+     * @param op
      * @return 结果
      */
-    private static List<Map<String, Object>> readExcel_xls(File file, String sheetName, int sheetIdx, String[] columnName) {
+    private static List<Map<String, Object>> readExcel_xls(File file, String sheetName, int sheetIdx, String[] columnName, ExcelMetrics.Operation op) {
         List<Map<String, Object>> resultList;
-        try {
-            HSSFWorkbook wb = new HSSFWorkbook(new FileInputStream(file));
-            resultList = readExcel(wb, sheetName, sheetIdx, columnName);
+        //直接按文件随机读取,不把整个文件读入内存;工作簿构建完成后即可关闭
+        long begin = op.begin();
+        try (NPOIFSFileSystem fs = new NPOIFSFileSystem(file, true)) {
+            HSSFWorkbook wb = new HSSFWorkbook(fs.getRoot(), false);
+            op.end(ExcelMetrics.Phase.OPEN, begin);
+            begin = op.begin();
+            resultList = readExcel(wb, sheetName, sheetIdx, columnName, op);
+            op.end(ExcelMetrics.Phase.CONVERT, begin);
         } catch (Exception e) {
-            StringWriter sw = new StringWriter();
-            PrintWriter pw = new PrintWriter(sw);
-            e.printStackTrace(pw);
-            log.info(sw.toString());
+            log.error("读取Excel失败", e);
             resultList = null;
-            try {
-                sw.close();
-                pw.close();
-            } catch (IOException e1) {
-                log.error("异常", e1);
-            }
         }
         return resultList;
     }
 
     /**
-     * 读取xlsx
+     * 读取xlsx,基于流式解析,不构建XSSFWorkbook
      *
      * @param file
      * @param sheetName
      * @param sheetIdx
      * @param columnName
+     * @param op
      * @return 结果
      */
-    private static List<Map<String, Object>> readExcel_xlsx(File file, String sheetName, int sheetIdx, String[] columnName) {
-        List<Map<String, Object>> resultList;
-        try {
-            XSSFWorkbook wb = new XSSFWorkbook(new FileInputStream(file));
-            resultList = readExcel(wb, sheetName, sheetIdx, columnName);
+    private static List<Map<String, Object>> readExcel_xlsx(File file, String sheetName, int sheetIdx, String[] columnName, ExcelMetrics.Operation op) {
+        List<Map<String, Object>> resultList = new LinkedList<>();
+        long begin = op.begin();
+        try (XlsxStreamReader reader = openExcel_xlsx(file, sheetName, sheetIdx, columnName)) {
+            op.end(ExcelMetrics.Phase.OPEN, begin);
+            begin = op.begin();
+            while (reader.hasNext()) {
+                resultList.add(reader.next());
+            }
+            op.end(ExcelMetrics.Phase.PARSE, begin);
+            reader.getInterner().report(op);
         } catch (Exception e) {
-            StringWriter sw = new StringWriter();
-            PrintWriter pw = new PrintWriter(sw);
-            e.printStackTrace(pw);
-            log.info(sw.toString());
+            log.error("读取Excel失败", e);
             resultList = null;
+        }
+        return resultList;
+    }
+
+    /**
+     * 流式读取,逐行回调,不在内存中保留整个文件
+     *
+     * @param file       路径
+     * @param ext        扩展名
+     * @param sheetName  读取的sheet名;为空null时,按照sheetIdx读取
+     * @param sheetIdx   sheet页号,从0开始
+     * @param columnName 列名
+     * @param handler    行处理
+     * @return 处理的行数,失败时返回-1
+     */
+    public static int readExcel(File file, String ext, String sheetName, int sheetIdx, final String[] columnName, final RowHandler handler) {
+        return readExcelValues(file, ext, sheetName, sheetIdx, columnName, (rowNum, values) -> handler.handle(rowNum, toRowMap(columnName, values)));
+    }
+
+    /**
+     * 流式读取,逐行回调原始值,不构建Map
+     *
+     * @param file       路径
+     * @param ext        扩展名
+     * @param sheetName  读取的sheet名;为空null时,按照sheetIdx读取
+     * @param sheetIdx   sheet页号,从0开始
+     * @param columnName 列名
+     * @param handler    行处理
+     * @return 处理的行数,失败时返回-1
+     */
+    public static int readExcelValues(File file, String ext, String sheetName, int sheetIdx, String[] columnName, RowValuesHandler handler) {
+        ExcelMetrics.Operation op = ExcelMetrics.start(ExcelMetrics.READ);
+        int count = readExcelValues(file, ext, sheetName, sheetIdx, columnName, handler, op);
+        op.finish(count >= 0);
+        return count;
+    }
+
+    /**
+     * 流式读取,逐行回调Map,度量记入op
+     */
+    static int readExcel(File file, String ext, String sheetName, int sheetIdx, final String[] columnName, final RowHandler handler, ExcelMetrics.Operation op) {
+        return readExcel(file, ext, sheetName, sheetIdx, columnName, 0, handler, op);
+    }
+
+    /**
+     * 流式读取,跳过行号小于skipToRow的行,逐行回调Map,度量记入op
+     * <p>
+     * 跳过的行只扫描不解码,不查共享字符串表也不构建Map,用于从检查点继续导入
+     */
+    static int readExcel(File file, String ext, String sheetName, int sheetIdx, final String[] columnName, int skipToRow, final RowHandler handler, ExcelMetrics.Operation op) {
+        return readExcelValues(file, ext, sheetName, sheetIdx, columnName, skipToRow, (rowNum, values) -> handler.handle(rowNum, toRowMap(columnName, values)), op);
+    }
+
+    /**
+     * 流式读取,逐行回调原始值,度量记入op
+     */
+    static int readExcelValues(File file, String ext, String sheetName, int sheetIdx, String[] columnName, RowValuesHandler handler, ExcelMetrics.Operation op) {
+        return readExcelValues(file, ext, sheetName, sheetIdx, columnName, 0, handler, op);
+    }
+
+    /**
+     * 流式读取,跳过行号小于skipToRow的行,逐行回调原始值,度量记入op
+     * <p>
+     * 度量启用时包装回调以计时:回调耗时计入CONVERT,其余计入PARSE;xls的打开与解析在同一次事件处理中完成,不单独计OPEN
+     */
+    static int readExcelValues(File file, String ext, String sheetName, int sheetIdx, String[] columnName, int skipToRow, final RowValuesHandler handler, ExcelMetrics.Operation op) {
+        return readExcelCells(file, ext, sheetName, sheetIdx, columnName, skipToRow, false,
+                (rowNum, values, numbers, dates) -> handler.handle(rowNum, values), op);
+    }
+
+    /**
+     * 流式读取,逐行回调原始值,keepNumbers为true时同时回调数值单元格的原值,度量记入op
+     */
+    static int readExcelCells(File file, String ext, String sheetName, int sheetIdx, String[] columnName, int skipToRow, boolean keepNumbers, RowCellsHandler handler, ExcelMetrics.Operation op) {
+        int startRowPos = Math.max(readStartRowPos, skipToRow);
+        try {
+            ext = resolveExt(file, ext);
+            TimedHandler timed = null;
+            if (op.isActive()) {
+                op.addBytesRead(file.length());
+                handler = timed = new TimedHandler(handler, op);
+            }
+            int count = 0;
+            long begin = op.begin();
+            if ("xls".equals(ext)) {
+                XlsStreamReader reader = new XlsStreamReader(file, sheetName, sheetIdx, columnName, startRowPos);
+                if (keepNumbers) {
+                    count = reader.read(handler);
+                } else {
+                    final RowCellsHandler cells = handler;
+                    count = reader.read((rowNum, values) -> cells.handle(rowNum, values, null, null));
+                }
+                reader.getInterner().report(op);
+            } else if ("xlsx".equals(ext)) {
+                try (XlsxStreamReader reader = XlsxStreamReader.open(file, sheetName, sheetIdx, columnName, startRowPos, keepNumbers)) {
+                    op.end(ExcelMetrics.Phase.OPEN, begin);
+                    begin = op.begin();
+                    while (reader.hasNext()) {
+                        String[] values = reader.nextValues();
+                        handler.handle(reader.getRowNum(), values, reader.getNumbers(), reader.getDates());
+                        count++;
+                    }
+                    reader.getInterner().report(op);
+                }
+            } else {
+                log.info("读取Excel:无法识别的文件格式，请您确保您的文件是Excel文件，并且无损，然后再试。");
+                return -1;
+            }
+            if (timed != null) {
+                op.addPhaseNanos(ExcelMetrics.Phase.CONVERT, timed.nanos);
+                op.addPhaseNanos(ExcelMetrics.Phase.PARSE, System.nanoTime() - begin - timed.nanos);
+                op.addRowsRead(count, columnName.length);
+            }
+            return count;
+        } catch (Exception e) {
+            log.error("读取Excel失败", e);
+        }
+        return -1;
+    }
+
+    /**
+     * 记录回调耗时,并定期采样堆使用量
+     */
+    private static class TimedHandler implements RowCellsHandler {
+
+        private final RowCellsHandler handler;
+
+        private final ExcelMetrics.Operation op;
+
+        private long nanos;
+
+        private long rows;
+
+        TimedHandler(RowCellsHandler handler, ExcelMetrics.Operation op) {
+            this.handler = handler;
+            this.op = op;
+        }
+
+        @Override
+        public void handle(int rowNum, String[] values, double[] numbers, boolean[] dates) throws Exception {
+            long begin = System.nanoTime();
+            handler.handle(rowNum, values, numbers, dates);
+            nanos += System.nanoTime() - begin;
+            op.rowProcessed(++rows);
+        }
+    }
+
+    /**
+     * 读取并直接映射为bean,按列位置对应属性,不构建中间Map;数值与日期属性取单元格的原值,不经过取整
+     *
+     * @param file      路径
+     * @param ext       扩展名
+     * @param sheetName 读取的sheet名;为空null时,按照sheetIdx读取
+     * @param sheetIdx  sheet页号,从0开始
+     * @param fieldName 各列对应的属性名;为null的列忽略
+     * @param clazz     目标类,需要无参构造
+     * @return 为空时，返回null
+     */
+    public static <T> List<T> readExcel(File file, String ext, String sheetName, int sheetIdx, String[] fieldName, Class<T> clazz) {
+        final List<T> resultList = new ArrayList<>();
+        try {
+            final BeanMapper<T> mapper = BeanMapper.of(clazz, fieldName);
+            ExcelMetrics.Operation op = ExcelMetrics.start(ExcelMetrics.READ);
+            int count = readExcelCells(file, ext, sheetName, sheetIdx, fieldName, 0, true,
+                    (rowNum, values, numbers, dates) -> resultList.add(mapper.map(rowNum, values, numbers, dates)), op);
+            op.finish(count >= 0);
+            return count < 0 ? null : resultList;
+        } catch (Exception e) {
+            log.error("读取Excel失败", e);
+        }
+        return null;
+    }
+
+    /**
+     * 按列读取到列式存储中,数值列存为long[],字符串列做字典编码
+     *
+     * @param file       路径
+     * @param ext        扩展名
+     * @param sheetName  读取的sheet名;为空null时,按照sheetIdx读取
+     * @param sheetIdx   sheet页号,从0开始
+     * @param columnName 列名
+     * @return 为空时，返回null
+     */
+    public static ColumnTable readExcelColumns(File file, String ext, String sheetName, int sheetIdx, String[] columnName) {
+        final ColumnTable table = new ColumnTable(columnName);
+        int count = readExcelValues(file, ext, sheetName, sheetIdx, columnName, (rowNum, values) -> table.addRow(values));
+        return count < 0 ? null : table;
+    }
+
+    /**
+     * 读取全部sheet,文件只打开一次,xlsx的各sheet在公共ForkJoinPool中并行解析
+     *
+     * @param file       路径
+     * @param ext        扩展名
+     * @param columnName 列名,各sheet相同
+     * @return 按sheet顺序排列的sheet名与数据;为空时，返回null
+     */
+    public static Map<String, List<Map<String, Object>>> readAllSheets(File file, String ext, String[] columnName) {
+        return readAllSheets(file, ext, columnName, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 读取全部sheet,文件只打开一次,xlsx的各sheet在pool中并行解析
+     *
+     * @param file       路径
+     * @param ext        扩展名
+     * @param columnName 列名,各sheet相同
+     * @param pool       解析使用的线程池
+     * @return 按sheet顺序排列的sheet名与数据;为空时，返回null
+     */
+    public static Map<String, List<Map<String, Object>>> readAllSheets(File file, String ext, String[] columnName, ForkJoinPool pool) {
+        ExcelMetrics.Operation op = ExcelMetrics.start(ExcelMetrics.READ);
+        Map<String, List<Map<String, Object>>> result = null;
+        try {
+            ext = resolveExt(file, ext);
+            if (op.isActive()) op.addBytesRead(file.length());
+            long begin = op.begin();
+            if ("xls".equals(ext)) {
+                result = readAllSheets_xls(file, columnName);
+            } else if ("xlsx".equals(ext)) {
+                result = readAllSheets_xlsx(file, columnName, pool);
+            } else {
+                log.info("读取Excel:无法识别的文件格式，请您确保您的文件是Excel文件，并且无损，然后再试。");
+            }
+            op.end(ExcelMetrics.Phase.PARSE, begin);
+        } catch (Exception e) {
+            log.error("读取Excel失败", e);
+        }
+        if (result != null && op.isActive()) {
+            for (List<Map<String, Object>> list : result.values()) {
+                op.addRowsRead(list.size(), columnName.length);
+            }
+        }
+        op.finish(result != null);
+        return result;
+    }
+
+    /**
+     * 一次解析读取xls的全部sheet;BIFF8各sheet顺序存放在同一个流中,无法并行
+     */
+    private static Map<String, List<Map<String, Object>>> readAllSheets_xls(File file, final String[] columnName) throws Exception {
+        final Map<String, List<Map<String, Object>>> result = new LinkedHashMap<>();
+        new XlsStreamReader(file, null, -1, columnName, readStartRowPos).readAllSheets((sheet, rowNum, values) -> {
+            List<Map<String, Object>> list = result.get(sheet);
+            if (list == null) {
+                list = new LinkedList<>();
+                result.put(sheet, list);
+            }
+            list.add(toRowMap(columnName, values));
+        });
+        return result;
+    }
+
+    /**
+     * 打开一次xlsx包,共享字符串表只解析一次,各sheet的XML并行解析
+     */
+    private static Map<String, List<Map<String, Object>>> readAllSheets_xlsx(File file, final String[] columnName, ForkJoinPool pool) throws Exception {
+        OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ);
+        try {
+            XSSFReader xssfReader = new XSSFReader(pkg);
+            final ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg);
+            XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+            final AtomicBoolean aborted = new AtomicBoolean();
+            Map<String, ForkJoinTask<List<Map<String, Object>>>> tasks = new LinkedHashMap<>();
             try {
-                sw.close();
-                pw.close();
-            } catch (IOException e1) {
-                log.error("异常", e1);
+                while (it.hasNext()) {
+                    final InputStream sheet = it.next();
+                    tasks.put(it.getSheetName(), pool.submit(() -> {
+                        List<Map<String, Object>> list = new LinkedList<>();
+                        try (XlsxStreamReader reader = new XlsxStreamReader(null, sharedStrings, sheet, columnName, readStartRowPos, null)) {
+                            while (!aborted.get() && reader.hasNext()) {
+                                list.add(reader.next());
+                            }
+                        }
+                        return list;
+                    }));
+                }
+                Map<String, List<Map<String, Object>>> result = new LinkedHashMap<>();
+                RuntimeException error = null;
+                for (Map.Entry<String, ForkJoinTask<List<Map<String, Object>>>> entry : tasks.entrySet()) {
+                    try {
+                        result.put(entry.getKey(), entry.getValue().join());
+                    } catch (RuntimeException e) {
+                        if (error == null) error = e;
+                        aborted.set(true);
+                    }
+                }
+                if (error != null) throw error;
+                return result;
+            } finally {
+                //任何退出路径都先让未完成的sheet停止解析,等全部任务结束后再关闭包
+                aborted.set(true);
+                for (ForkJoinTask<?> task : tasks.values()) {
+                    task.quietlyJoin();
+                }
             }
+        } finally {
+            pkg.revert();
         }
-        return resultList;
+    }
+
+    /**
+     * 流式读取xls,逐行回调
+     *
+     * @param file       文件
+     * @param sheetName  读取的sheet名;为空null时,按照sheetIdx读取
+     * @param sheetIdx   sheet页号,从0开始
+     * @param columnName 列名
+     * @param handler    行处理
+     * @return 处理的行数
+     * @throws Exception 异常
+     */
+    public static int readExcel_xls(File file, String sheetName, int sheetIdx, final String[] columnName, final RowHandler handler) throws Exception {
+        return new XlsStreamReader(file, sheetName, sheetIdx, columnName, readStartRowPos)
+                .read((rowNum, values) -> handler.handle(rowNum, toRowMap(columnName, values)));
+    }
+
+    /**
+     * 流式读取xlsx,逐行回调
+     *
+     * @param file       文件
+     * @param sheetName  读取的sheet名;为空null时,按照sheetIdx读取
+     * @param sheetIdx   sheet页号,从0开始
+     * @param columnName 列名
+     * @param handler    行处理
+     * @return 处理的行数
+     * @throws Exception 异常
+     */
+    public static int readExcel_xlsx(File file, String sheetName, int sheetIdx, String[] columnName, RowHandler handler) throws Exception {
+        int count = 0;
+        try (XlsxStreamReader reader = openExcel_xlsx(file, sheetName, sheetIdx, columnName)) {
+            while (reader.hasNext()) {
+                Map<String, Object> map = reader.next();
+                handler.handle(reader.getRowNum(), map);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 以Iterator方式流式读取xlsx,用完需要close
+     *
+     * @param file       文件
+     * @param sheetName  读取的sheet名;为空null时,按照sheetIdx读取
+     * @param sheetIdx   sheet页号,从0开始
+     * @param columnName 列名
+     * @return 行迭代器
+     * @throws Exception 异常
+     */
+    public static XlsxStreamReader openExcel_xlsx(File file, String sheetName, int sheetIdx, String[] columnName) throws Exception {
+        return XlsxStreamReader.open(file, sheetName, sheetIdx, columnName, readStartRowPos);
     }
 
     /**
@@ -251,6 +834,14 @@ public class ExcelTools {
      * @throws Exception 异常
      */
     public static List<Map<String, Object>> readExcel(Workbook wb, String sheetName, int sheetIdx, String[] columnName) throws Exception {
+        return readExcel(wb, sheetName, sheetIdx, columnName, ExcelMetrics.Operation.NONE);
+    }
+
+    /**
+     * 读取Wookbook,单元格的值按列去重,去重的命中率记入op
+     */
+    static List<Map<String, Object>> readExcel(Workbook wb, String sheetName, int sheetIdx, String[] columnName, ExcelMetrics.Operation op) throws Exception {
+        ValueInterner interner = new ValueInterner(columnName.length);
         Sheet sheet = null;
         List<Map<String, Object>> resultList = new LinkedList<>();
         sheet = ("".equals(sheetName) || null == sheetName) ? wb.getSheetAt(sheetIdx) : wb.getSheet(sheetName);
@@ -260,47 +851,108 @@ public class ExcelTools {
             Row row = sheet.getRow(i);
             if (row == null) continue;
             for (int j = 0; j < columnName.length; j++) {
-                map.put(columnName[j], getCellValue(row.getCell(j)));
+                map.put(columnName[j], interner.intern(j, getCellValue(row.getCell(j))));
             }
             resultList.add(map);
         }
+        interner.report(op);
         return resultList;
     }
 
     /***
      * 读取单元格的值
      */
-    private static String getCellValue(Cell cell) throws Exception {
-        Object result = "";
-        if (cell != null) {
-            switch (cell.getCellType()) {
-                case Cell.CELL_TYPE_STRING:
-                    result = cell.getStringCellValue();
-                    break;
-                case Cell.CELL_TYPE_NUMERIC:
-                    result = new DecimalFormat("0").format(cell.getNumericCellValue());
-                    break;
-                case Cell.CELL_TYPE_BOOLEAN:
-                    result = cell.getBooleanCellValue();
-                    break;
-                case Cell.CELL_TYPE_FORMULA:
-                    result = cell.getCellFormula();
-                    break;
-                case Cell.CELL_TYPE_ERROR:
-                    result = cell.getErrorCellValue();
-                    break;
-                case Cell.CELL_TYPE_BLANK:
-                    break;
-                default:
-                    result = cell.toString();
-                    break;
-            }
-        }
-        String reString = result.toString();
-        Pattern p = Pattern.compile("\\s*|\t|\r|\n");
-        Matcher m = p.matcher(reString);
-        reString = m.replaceAll("").trim();
-        return reString;
+    static String getCellValue(Cell cell) throws Exception {
+        if (cell == null) {
+            return "";
+        }
+        switch (cell.getCellType()) {
+            case Cell.CELL_TYPE_STRING:
+                return cleanCellValue(cell.getStringCellValue());
+            case Cell.CELL_TYPE_NUMERIC:
+                //数值格式化结果不含空白,无需清理
+                return formatNumeric(cell.getNumericCellValue());
+            case Cell.CELL_TYPE_BOOLEAN:
+                return String.valueOf(cell.getBooleanCellValue());
+            case Cell.CELL_TYPE_FORMULA:
+                return cleanCellValue(cell.getCellFormula());
+            case Cell.CELL_TYPE_ERROR:
+                return String.valueOf(cell.getErrorCellValue());
+            case Cell.CELL_TYPE_BLANK:
+                return "";
+            default:
+                return cleanCellValue(cell.toString());
+        }
+    }
+
+    /**
+     * 按列名将一行的值组装为Map
+     */
+    static Map<String, Object> toRowMap(String[] columnName, String[] values) {
+        Map<String, Object> map = new HashMap<>();
+        for (int j = 0; j < columnName.length; j++) {
+            map.put(columnName[j], values[j]);
+        }
+        return map;
+    }
+
+    /**
+     * 数值单元格转字符串,结果与new DecimalFormat("0").format(value)一致
+     * <p>
+     * 可精确转为long的值(含HALF_EVEN取整后)直接用Long.toString,其余情况使用线程内缓存的DecimalFormat
+     */
+    static String formatNumeric(double value) {
+        double rounded = Math.rint(value);
+        if (rounded > -LONG_EXACT_BOUND && rounded < LONG_EXACT_BOUND) {
+            long l = (long) rounded;
+            if (l == 0) {
+                //DecimalFormat对-0.0及取整为-0的负数输出"-0"
+                return Double.doubleToRawLongBits(rounded) < 0 ? "-0" : "0";
+            }
+            return Long.toString(l);
+        }
+        return NUMERIC_FORMAT.get().format(value);
+    }
+
+    /**
+     * 去掉单元格值中的空白字符,结果与正则\s*|\t|\r|\n替换后再trim一致
+     * <p>
+     * 不含空白字符的值直接返回原字符串,不产生新对象
+     */
+    static String cleanCellValue(String reString) {
+        int len = reString.length();
+        int i = 0;
+        while (i < len && !isRegexSpace(reString.charAt(i))) {
+            i++;
+        }
+        if (i == len) {
+            //首尾没有控制字符时trim返回原字符串
+            return reString.trim();
+        }
+        char[] buf = new char[len];
+        reString.getChars(0, i, buf, 0);
+        int n = i;
+        for (; i < len; i++) {
+            char ch = reString.charAt(i);
+            if (!isRegexSpace(ch)) {
+                buf[n++] = ch;
+            }
+        }
+        int start = 0;
+        while (start < n && buf[start] <= ' ') {
+            start++;
+        }
+        while (n > start && buf[n - 1] <= ' ') {
+            n--;
+        }
+        return new String(buf, start, n - start);
+    }
+
+    /**
+     * 正则中\s匹配的字符:[ \t\n\x0B\f\r]
+     */
+    private static boolean isRegexSpace(char ch) {
+        return ch == ' ' || (ch >= '\t' && ch <= '\r');
     }
 
     /**
@@ -330,6 +982,8 @@ public class ExcelTools {
         Row row = null;
         Cell cell = null;
         int rowNum = 0;
+        ExcelMetrics.Operation op = ExcelMetrics.start(ExcelMetrics.EXPORT);
+        long begin = op.begin();
         try {
             workbook = createWorkbook(HSSFWorkbook.class);
             sheet = ("".equals(sheetName) || null == sheetName) ? workbook.createSheet() : workbook.createSheet(sheetName);
@@ -339,42 +993,41 @@ public class ExcelTools {
             CellStyle cellStyle = workbook.createCellStyle();
             cellStyle.setFont(font);
             //生成标题
+            ColumnWidths widths = new ColumnWidths(columnAlignName.length);
             sheet.createFreezePane(0, 1);
             row = sheet.createRow(rowNum++);
             for (int i = 0; i < columnAlignName.length; i++) {
                 cell = row.createCell(i);
                 cell.setCellValue(columnAlignName[i]);
                 cell.setCellStyle(cellStyle);
+                widths.update(i, columnAlignName[i]);
             }
             //生成数据
             for (int i = 0; i < list.size(); i++) {
                 Map<String, Object> map = list.get(i);
                 row = sheet.createRow(rowNum++);
+                widths.nextRow();
                 for (int j = 0; j < columnName.length; j++) {
                     cell = row.createCell(j);
                     Object tmp = map.get(columnName[j]);
-                    cell.setCellValue(tmp == null ? "" : String.valueOf(tmp));
+                    String value = tmp == null ? "" : String.valueOf(tmp);
+                    cell.setCellValue(value);
+                    widths.update(j, value);
                     //设置为字符串
                     cell.setCellType(HSSFCell.CELL_TYPE_STRING);
                 }
             }
-            //调整宽度
-            for (int i = 0; i < columnAlignName.length; i++) {
-                sheet.autoSizeColumn((short) i);
-            }
+            op.end(ExcelMetrics.Phase.CONVERT, begin);
+            //按统计的显示长度设置宽度
+            begin = op.begin();
+            widths.apply(sheet);
+            op.end(ExcelMetrics.Phase.AUTOSIZE, begin);
+            op.addRowsWritten(rowNum - 1, columnName.length);
         } catch (Exception e) {
-            StringWriter sw = new StringWriter();
-            PrintWriter pw = new PrintWriter(sw);
-            e.printStackTrace(pw);
-            log.info(sw.toString());
+            log.error("生成Excel失败", e);
             workbook = null;
-            try {
-                sw.close();
-                pw.close();
-            } catch (IOException e1) {
-                log.error("异常", e1);
-            }
         }
+        op.finish(workbook != null);
         return workbook;
     }
 
@@ -405,6 +1058,8 @@ public class ExcelTools {
         Row row = null;
         Cell cell = null;
         int rowNum = 0;
+        ExcelMetrics.Operation op = ExcelMetrics.start(ExcelMetrics.EXPORT);
+        long begin = op.begin();
         try {
             workbook = createWorkbook(XSSFWorkbook.class);
             sheet = ("".equals(sheetName) || null == sheetName) ? workbook.createSheet() : workbook.createSheet(sheetName);
@@ -414,36 +1069,38 @@ public class ExcelTools {
             CellStyle cellStyle = workbook.createCellStyle();
             cellStyle.setFont(font);
             //生成标题
+            ColumnWidths widths = new ColumnWidths(columnName.length);
             sheet.createFreezePane(0, 1);
             row = sheet.createRow(rowNum++);
             for (int i = 0; i < columnName.length; i++) {
                 cell = row.createCell(i);
                 cell.setCellValue(columnAlignName[i]);
                 cell.setCellStyle(cellStyle);
+                widths.update(i, columnAlignName[i]);
             }
             //生成数据
             for (int i = 0; i < list.size(); i++) {
                 Map<String, Object> map = list.get(i);
                 row = sheet.createRow(rowNum++);
+                widths.nextRow();
                 for (int j = 0; j < columnName.length; j++) {
                     cell = row.createCell(j);
-                    cell.setCellValue((String) map.get(columnName[j]));
+                    String value = (String) map.get(columnName[j]);
+                    cell.setCellValue(value);
+                    widths.update(j, value);
                 }
             }
-
+            op.end(ExcelMetrics.Phase.CONVERT, begin);
+            //按统计的显示长度设置宽度
+            begin = op.begin();
+            widths.apply(sheet);
+            op.end(ExcelMetrics.Phase.AUTOSIZE, begin);
+            op.addRowsWritten(rowNum - 1, columnName.length);
         } catch (Exception e) {
-            StringWriter sw = new StringWriter();
-            PrintWriter pw = new PrintWriter(sw);
-            e.printStackTrace(pw);
-            log.info(sw.toString());
+            log.error("生成Excel失败", e);
             workbook = null;
-            try {
-                sw.close();
-                pw.close();
-            } catch (IOException e1) {
-                log.error("异常", e1);
-            }
         }
+        op.finish(workbook != null);
         return workbook;
     }
 
@@ -474,6 +1131,8 @@ public class ExcelTools {
         Row row = null;
         Cell cell = null;
         int rowNum = 0;
+        ExcelMetrics.Operation op = ExcelMetrics.start(ExcelMetrics.EXPORT);
+        long begin = op.begin();
         try {
             workbook = createWorkbook(HSSFWorkbook.class);
             sheet = ("".equals(sheetName) || null == sheetName) ? workbook.createSheet() : workbook.createSheet(sheetName);
@@ -483,38 +1142,44 @@ public class ExcelTools {
             CellStyle cellStyle = workbook.createCellStyle();
             cellStyle.setFont(font);
             //生成标题
+            ColumnWidths widths = new ColumnWidths(columnName.length);
             sheet.createFreezePane(0, 1);
             row = sheet.createRow(rowNum++);
             for (int i = 0; i < columnName.length; i++) {
                 cell = row.createCell(i);
                 cell.setCellValue(columnAlignName[i]);
                 cell.setCellStyle(cellStyle);
+                widths.update(i, columnAlignName[i]);
             }
             //生成数据
-            for (int i = 0; i < list.size(); i++) {
-                Object bean = list.get(i);
-                Map<String, Object> fieldMap = new HashMap<String, Object>();
-                fieldMap = getFieldByObj(bean);
+            DateStyles dateStyles = new DateStyles(workbook);
+            Class<?> beanClass = null;
+            Function<Object, Object>[] getters = null;
+            for (Object bean : list) {
+                //getter按类缓存,同一类的bean只解析一次
+                if (bean.getClass() != beanClass) {
+                    beanClass = bean.getClass();
+                    getters = BeanAccessor.of(beanClass).getters(columnName);
+                }
                 row = sheet.createRow(rowNum++);
+                widths.nextRow();
                 for (int j = 0; j < columnName.length; j++) {
                     cell = row.createCell(j);
-                    cell.setCellValue((String) fieldMap.get(columnName[j]));
+                    String value = setCellValue(cell, getters[j] == null ? null : getters[j].apply(bean), dateStyles);
+                    widths.update(j, value);
                 }
             }
-
+            op.end(ExcelMetrics.Phase.CONVERT, begin);
+            //按统计的显示长度设置宽度
+            begin = op.begin();
+            widths.apply(sheet);
+            op.end(ExcelMetrics.Phase.AUTOSIZE, begin);
+            op.addRowsWritten(rowNum - 1, columnName.length);
         } catch (Exception e) {
-            StringWriter sw = new StringWriter();
-            PrintWriter pw = new PrintWriter(sw);
-            e.printStackTrace(pw);
-            log.info(sw.toString());
+            log.error("生成Excel失败", e);
             workbook = null;
-            try {
-                sw.close();
-                pw.close();
-            } catch (IOException e1) {
-                log.error("异常", e1);
-            }
         }
+        op.finish(workbook != null);
         return workbook;
     }
 
@@ -545,6 +1210,8 @@ public class ExcelTools {
         Row row = null;
         Cell cell = null;
         int rowNum = 0;
+        ExcelMetrics.Operation op = ExcelMetrics.start(ExcelMetrics.EXPORT);
+        long begin = op.begin();
         try {
             workbook = createWorkbook(XSSFWorkbook.class);
             sheet = ("".equals(sheetName) || null == sheetName) ? workbook.createSheet() : workbook.createSheet(sheetName);
@@ -554,93 +1221,427 @@ public class ExcelTools {
             CellStyle cellStyle = workbook.createCellStyle();
             cellStyle.setFont(font);
             //生成标题
+            ColumnWidths widths = new ColumnWidths(columnName.length);
             sheet.createFreezePane(0, 1);
             row = sheet.createRow(rowNum++);
             for (int i = 0; i < columnName.length; i++) {
                 cell = row.createCell(i);
                 cell.setCellValue(columnAlignName[i]);
                 cell.setCellStyle(cellStyle);
+                widths.update(i, columnAlignName[i]);
             }
             //生成数据
-            for (int i = 0; i < list.size(); i++) {
-                Object bean = list.get(i);
-                Map<String, Object> fieldMap = new HashMap<String, Object>();
-                fieldMap = getFieldByObj(bean);
+            DateStyles dateStyles = new DateStyles(workbook);
+            Class<?> beanClass = null;
+            Function<Object, Object>[] getters = null;
+            for (Object bean : list) {
+                //getter按类缓存,同一类的bean只解析一次
+                if (bean.getClass() != beanClass) {
+                    beanClass = bean.getClass();
+                    getters = BeanAccessor.of(beanClass).getters(columnName);
+                }
                 row = sheet.createRow(rowNum++);
+                widths.nextRow();
                 for (int j = 0; j < columnName.length; j++) {
                     cell = row.createCell(j);
-                    cell.setCellValue((String) fieldMap.get(columnName[j]));
+                    String value = setCellValue(cell, getters[j] == null ? null : getters[j].apply(bean), dateStyles);
+                    widths.update(j, value);
                 }
             }
-
+            op.end(ExcelMetrics.Phase.CONVERT, begin);
+            //按统计的显示长度设置宽度
+            begin = op.begin();
+            widths.apply(sheet);
+            op.end(ExcelMetrics.Phase.AUTOSIZE, begin);
+            op.addRowsWritten(rowNum - 1, columnName.length);
         } catch (Exception e) {
-            StringWriter sw = new StringWriter();
-            PrintWriter pw = new PrintWriter(sw);
-            e.printStackTrace(pw);
-            log.info(sw.toString());
+            log.error("生成Excel失败", e);
             workbook = null;
-            try {
-                sw.close();
-                pw.close();
-            } catch (IOException e1) {
-                log.error("异常", e1);
-            }
         }
+        op.finish(workbook != null);
         return workbook;
     }
 
     /**
-     * 获取某个bean的属性与属性值
+     * 流式生成xlsx并直接写入输出流
      *
-     * @param obj
-     * @return 结果
+     * @param rows            数据源,逐行读取
+     * @param columnName      Map中存放的key;生成excel列的顺序
+     * @param columnAlignName 生成Excel时显示的列的别名
+     * @param sheetName       sheet页的名称
+     * @param out             输出流,由调用方关闭
+     * @return 是否成功
+     */
+    public static boolean writeXSSFWookbook(Iterator<Map<String, Object>> rows, String[] columnName, String[] columnAlignName, String sheetName, OutputStream out) {
+        return writeXSSFWookbook(rows, columnName, columnAlignName, sheetName, SXSSFWorkbook.DEFAULT_WINDOW_SIZE, out);
+    }
+
+    /**
+     * 流式生成xlsx并直接写入输出流
+     *
+     * @param rows            数据源
+     * @param columnName      Map中存放的key;生成excel列的顺序
+     * @param columnAlignName 生成Excel时显示的列的别名
+     * @param sheetName       sheet页的名称
+     * @param out             输出流,由调用方关闭
+     * @return 是否成功
+     */
+    public static boolean writeXSSFWookbook(Stream<Map<String, Object>> rows, String[] columnName, String[] columnAlignName, String sheetName, OutputStream out) {
+        return writeXSSFWookbook(rows.iterator(), columnName, columnAlignName, sheetName, SXSSFWorkbook.DEFAULT_WINDOW_SIZE, out);
+    }
+
+    /**
+     * 流式生成xlsx并直接写入输出流,内存中只保留最近windowSize行,更早的行写入临时文件
+     *
+     * @param rows            数据源,逐行读取
+     * @param columnName      Map中存放的key;生成excel列的顺序
+     * @param columnAlignName 生成Excel时显示的列的别名
+     * @param sheetName       sheet页的名称
+     * @param windowSize      内存中保留的行数
+     * @param out             输出流,由调用方关闭
+     * @return 是否成功
+     */
+    public static boolean writeXSSFWookbook(Iterator<Map<String, Object>> rows, String[] columnName, String[] columnAlignName, String sheetName, int windowSize, OutputStream out) {
+        ExcelMetrics.Operation op = ExcelMetrics.start(ExcelMetrics.EXPORT);
+        boolean ok = writeSXSSFWookbook(rows, false, columnName, columnAlignName, sheetName, windowSize, out, op);
+        op.finish(ok);
+        return ok;
+    }
+
+    /**
+     * 流式生成xlsx
+     *
+     * @param rows   数据源,逐行读取
+     * @param byBean 数据源为bean时为true,否则为Map
+     * @param op     度量
      */
-    private static Map<String, Object> getFieldByObj(Object obj) throws Exception {
-        Map<String, Object> fieldMap = new HashMap<String, Object>();
-        Field[] fields = obj.getClass().getDeclaredFields();
-        for (Field field : fields) {
-            String key = field.getName();
-            String value = getFieldValueByName(key, obj);
-            fieldMap.put(key, value);
+    static boolean writeSXSSFWookbook(Iterator<?> rows, boolean byBean, String[] columnName, String[] columnAlignName, String sheetName, int windowSize, OutputStream out, ExcelMetrics.Operation op) {
+        SXSSFWorkbook workbook = null;
+        Sheet sheet = null;
+        Row row = null;
+        Cell cell = null;
+        int rowNum = 0;
+        long begin = op.begin();
+        try {
+            workbook = new SXSSFWorkbook(windowSize);
+            //临时文件压缩,减少磁盘占用
+            workbook.setCompressTempFiles(true);
+            sheet = ("".equals(sheetName) || null == sheetName) ? workbook.createSheet() : workbook.createSheet(sheetName);
+            //标题格式
+            Font font = workbook.createFont();
+            font.setBoldweight(Font.BOLDWEIGHT_BOLD);
+            CellStyle cellStyle = workbook.createCellStyle();
+            cellStyle.setFont(font);
+            //生成标题
+            ColumnWidths widths = new ColumnWidths(columnName.length);
+            sheet.createFreezePane(0, 1);
+            row = sheet.createRow(rowNum++);
+            for (int i = 0; i < columnName.length; i++) {
+                cell = row.createCell(i);
+                cell.setCellValue(columnAlignName[i]);
+                cell.setCellStyle(cellStyle);
+                widths.update(i, columnAlignName[i]);
+            }
+            //生成数据
+            DateStyles dateStyles = new DateStyles(workbook);
+            Class<?> beanClass = null;
+            Function<Object, Object>[] getters = null;
+            while (rows.hasNext()) {
+                Object item = rows.next();
+                if (byBean && item.getClass() != beanClass) {
+                    beanClass = item.getClass();
+                    getters = BeanAccessor.of(beanClass).getters(columnName);
+                }
+                row = sheet.createRow(rowNum++);
+                widths.nextRow();
+                for (int j = 0; j < columnName.length; j++) {
+                    cell = row.createCell(j);
+                    if (byBean) {
+                        String value = setCellValue(cell, getters[j] == null ? null : getters[j].apply(item), dateStyles);
+                        widths.update(j, value);
+                    } else {
+                        Object tmp = ((Map<?, ?>) item).get(columnName[j]);
+                        if (tmp != null) {
+                            String value = String.valueOf(tmp);
+                            cell.setCellValue(value);
+                            widths.update(j, value);
+                        }
+                    }
+                }
+            }
+            op.end(ExcelMetrics.Phase.CONVERT, begin);
+            //按统计的显示长度设置宽度,流式写入时已刷出的行无法再用autoSizeColumn计算
+            begin = op.begin();
+            widths.apply(sheet);
+            op.end(ExcelMetrics.Phase.AUTOSIZE, begin);
+            write(workbook, out, op);
+            out.flush();
+            op.addRowsWritten(rowNum - 1, columnName.length);
+            return true;
+        } catch (Exception e) {
+            log.error("生成Excel失败", e);
+        } finally {
+            if (workbook != null) {
+                //删除临时文件
+                workbook.dispose();
+            }
         }
-        return fieldMap;
+        return false;
     }
 
     /**
-     * 获取某个属性的值
+     * 由bean流式生成xlsx并直接写入输出流
      *
-     * @param fieldName
-     * @param obj
-     * @return
-     * @throws Exception
+     * @param list            数据源,逐行读取
+     * @param columnName      bean的属性名;生成excel列的顺序
+     * @param columnAlignName 生成Excel时显示的列的别名
+     * @param sheetName       sheet页的名称
+     * @param out             输出流,由调用方关闭
+     * @return 是否成功
      */
-    private static String getFieldValueByName(String fieldName, Object obj) throws Exception {
-        String firstLetter = fieldName.substring(0, 1).toUpperCase();
-        String getter = "get" + firstLetter + fieldName.substring(1);
-        Method method = obj.getClass().getMethod(getter);
-        Object value = method.invoke(obj, new Object[]{});
-        return getStringValue(value);
+    public static boolean writeXSSFWookbookByBean(Iterator<?> list, String[] columnName, String[] columnAlignName, String sheetName, OutputStream out) {
+        return writeXSSFWookbookByBean(list, columnName, columnAlignName, sheetName, SXSSFWorkbook.DEFAULT_WINDOW_SIZE, out);
     }
 
-    private static String getStringValue(Object value) {
-        if (value instanceof String)
-            return (String) value;
-        else if (value instanceof Integer)
-            return String.valueOf(value);
-        else if (value instanceof Boolean)
-            return String.valueOf(value);
-        else if (value instanceof Double)
-            return String.valueOf(value);
-        else if (value instanceof Float)
-            return String.valueOf(value);
-        else if (value instanceof Byte)
-            return String.valueOf(value);
-        else if (value instanceof Short)
-            return String.valueOf(value);
-        else if (value instanceof Long)
-            return String.valueOf(value);
-        else
+    /**
+     * 由bean流式生成xlsx并直接写入输出流
+     *
+     * @param list            数据源
+     * @param columnName      bean的属性名;生成excel列的顺序
+     * @param columnAlignName 生成Excel时显示的列的别名
+     * @param sheetName       sheet页的名称
+     * @param out             输出流,由调用方关闭
+     * @return 是否成功
+     */
+    public static boolean writeXSSFWookbookByBean(Stream<?> list, String[] columnName, String[] columnAlignName, String sheetName, OutputStream out) {
+        return writeXSSFWookbookByBean(list.iterator(), columnName, columnAlignName, sheetName, SXSSFWorkbook.DEFAULT_WINDOW_SIZE, out);
+    }
+
+    /**
+     * 由bean流式生成xlsx并直接写入输出流
+     *
+     * @param list            数据源,逐行读取
+     * @param columnName      bean的属性名;生成excel列的顺序
+     * @param columnAlignName 生成Excel时显示的列的别名
+     * @param sheetName       sheet页的名称
+     * @param windowSize      内存中保留的行数
+     * @param out             输出流,由调用方关闭
+     * @return 是否成功
+     */
+    public static boolean writeXSSFWookbookByBean(Iterator<?> list, String[] columnName, String[] columnAlignName, String sheetName, int windowSize, OutputStream out) {
+        ExcelMetrics.Operation op = ExcelMetrics.start(ExcelMetrics.EXPORT);
+        boolean ok = writeSXSSFWookbook(list, true, columnName, columnAlignName, sheetName, windowSize, out, op);
+        op.finish(ok);
+        return ok;
+    }
+
+    /**
+     * 查询结果流式生成xlsx并直接写入输出流
+     *
+     * @param conn            连接,由调用方关闭
+     * @param sql             查询语句
+     * @param params          查询参数,没有时为null
+     * @param columnName      结果集中的列名;生成excel列的顺序,为null时导出全部列
+     * @param columnAlignName 生成Excel时显示的列的别名,为null时与列名相同
+     * @param sheetName       sheet页的名称
+     * @param out             输出流,由调用方关闭
+     * @return 是否成功
+     */
+    public static boolean writeXSSFWookbook(Connection conn, String sql, Object[] params, String[] columnName, String[] columnAlignName, String sheetName, OutputStream out) {
+        return writeXSSFWookbook(conn, sql, params, columnName, columnAlignName, sheetName, SXSSFWorkbook.DEFAULT_WINDOW_SIZE, out);
+    }
+
+    /**
+     * 查询结果流式生成xlsx并直接写入输出流
+     * <p>
+     * 结果集逐行从数据库读取(MySQL使用fetchSize=Integer.MIN_VALUE),逐行写入,
+     * 结果集与工作簿都不会整体保留在内存中。读取期间该连接不能执行其他语句。
+     *
+     * @param conn            连接,由调用方关闭
+     * @param sql             查询语句
+     * @param params          查询参数,没有时为null
+     * @param columnName      结果集中的列名;生成excel列的顺序,为null时导出全部列
+     * @param columnAlignName 生成Excel时显示的列的别名,为null时与列名相同
+     * @param sheetName       sheet页的名称
+     * @param windowSize      内存中保留的行数
+     * @param out             输出流,由调用方关闭
+     * @return 是否成功
+     */
+    public static boolean writeXSSFWookbook(Connection conn, String sql, Object[] params, String[] columnName, String[] columnAlignName, String sheetName, int windowSize, OutputStream out) {
+        ExcelMetrics.Operation op = ExcelMetrics.start(ExcelMetrics.EXPORT);
+        boolean ok = false;
+        long begin = op.begin();
+        try (PreparedStatement ps = JdbcTools.prepareStreaming(conn, sql)) {
+            if (params != null) {
+                for (int i = 0; i < params.length; i++) {
+                    ps.setObject(i + 1, params[i]);
+                }
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                op.end(ExcelMetrics.Phase.OPEN, begin);
+                if (columnName == null) {
+                    ResultSetMetaData meta = rs.getMetaData();
+                    columnName = new String[meta.getColumnCount()];
+                    for (int i = 0; i < columnName.length; i++) {
+                        columnName[i] = meta.getColumnLabel(i + 1);
+                    }
+                }
+                if (columnAlignName == null) {
+                    columnAlignName = columnName;
+                }
+                ok = writeSXSSFWookbook(new ResultSetIterator(rs, columnName), false, columnName, columnAlignName, sheetName, windowSize, out, op);
+            }
+        } catch (SQLException e) {
+            log.error("查询失败", e);
+        }
+        op.finish(ok);
+        return ok;
+    }
+
+    /**
+     * 逐行读取结果集,每行复用同一个Map,写入后即被下一行覆盖
+     */
+    private static class ResultSetIterator implements Iterator<Map<String, Object>> {
+
+        private final ResultSet rs;
+
+        private final String[] columnName;
+
+        private final int[] columnIdx;
+
+        private final Map<String, Object> row = new HashMap<>();
+
+        //已读取但尚未返回
+        private boolean fetched;
+
+        private boolean end;
+
+        ResultSetIterator(ResultSet rs, String[] columnName) throws SQLException {
+            this.rs = rs;
+            this.columnName = columnName;
+            this.columnIdx = new int[columnName.length];
+            for (int i = 0; i < columnName.length; i++) {
+                columnIdx[i] = rs.findColumn(columnName[i]);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!fetched && !end) {
+                try {
+                    if (rs.next()) {
+                        fetched = true;
+                    } else {
+                        end = true;
+                    }
+                } catch (SQLException e) {
+                    throw new IllegalStateException("读取结果集失败", e);
+                }
+            }
+            return fetched;
+        }
+
+        @Override
+        public Map<String, Object> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            fetched = false;
+            try {
+                for (int i = 0; i < columnName.length; i++) {
+                    row.put(columnName[i], rs.getString(columnIdx[i]));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("读取结果集失败", e);
+            }
+            return row;
+        }
+    }
+
+    /**
+     * bean属性值按原类型写入单元格:数值、布尔、日期写为对应类型的单元格,
+     * 超出double精度(15位有效数字)的整数与小数、以及其他类型写为字符串,null不写入
+     *
+     * @return 用于估算列宽的显示文本,null不写入时返回null
+     */
+    private static String setCellValue(Cell cell, Object value, DateStyles dateStyles) {
+        if (value == null) {
+            return null;
+        } else if (value instanceof String) {
+            cell.setCellValue((String) value);
             return (String) value;
+        } else if (value instanceof Number && isExactDouble((Number) value)) {
+            cell.setCellValue(((Number) value).doubleValue());
+            return value.toString();
+        } else if (value instanceof Boolean) {
+            cell.setCellValue((Boolean) value);
+            return value.toString();
+        } else if (value instanceof java.sql.Date) {
+            cell.setCellValue((Date) value);
+            cell.setCellStyle(dateStyles.date());
+            //显示文本与格式等长
+            return DateStyles.DATE_FORMAT;
+        } else if (value instanceof Date) {
+            cell.setCellValue((Date) value);
+            cell.setCellStyle(dateStyles.dateTime());
+            return DateStyles.DATE_TIME_FORMAT;
+        } else if (value instanceof Calendar) {
+            cell.setCellValue((Calendar) value);
+            cell.setCellStyle(dateStyles.dateTime());
+            return DateStyles.DATE_TIME_FORMAT;
+        }
+        String text = String.valueOf(value);
+        cell.setCellValue(text);
+        return text;
+    }
+
+    /**
+     * Excel的数值只保留15位有效数字,更长的编号、金额写为数值会丢失精度
+     */
+    private static boolean isExactDouble(Number value) {
+        if (value instanceof Double || value instanceof Float) {
+            return true;
+        } else if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).precision() <= 15;
+        } else if (value instanceof BigInteger) {
+            return ((BigInteger) value).abs().compareTo(MAX_EXACT_INTEGER) < 0;
+        }
+        long v = value.longValue();
+        return v > -MAX_EXACT_LONG && v < MAX_EXACT_LONG;
+    }
+
+    /**
+     * 日期单元格的格式,每个工作簿用到时才创建,所有日期单元格共用
+     */
+    private static final class DateStyles {
+
+        static final String DATE_FORMAT = "yyyy-mm-dd";
+
+        static final String DATE_TIME_FORMAT = "yyyy-mm-dd hh:mm:ss";
+
+        private final Workbook workbook;
+
+        private CellStyle date;
+
+        private CellStyle dateTime;
+
+        DateStyles(Workbook workbook) {
+            this.workbook = workbook;
+        }
+
+        CellStyle date() {
+            if (date == null) date = create(DATE_FORMAT);
+            return date;
+        }
+
+        CellStyle dateTime() {
+            if (dateTime == null) dateTime = create(DATE_TIME_FORMAT);
+            return dateTime;
+        }
+
+        private CellStyle create(String format) {
+            CellStyle style = workbook.createCellStyle();
+            style.setDataFormat(workbook.createDataFormat().getFormat(format));
+            return style;
+        }
     }
 
     public static <T> T createWorkbook(Class<T> clazz) {
@@ -0,0 +1,146 @@
+package com.Noah.utils;
+
+import lombok.Data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * 导入的检查点
+ * <p>
+ * 记录导入的文件、sheet、文件内容的SHA-256与最后一个已提交的行号,以properties格式保存在本地文件中。
+ * 保存时先写临时文件并刷到磁盘,再原子替换,进程中途被杀或断电时检查点文件只会是完整的旧版本或新版本。
+ * <p>
+ * 检查点在数据库提交之后保存,两者之间中断时,重启后会重新导入最后一次提交的行,
+ * 这些行需要由唯一约束或RowProcessor中的查重跳过。
+ */
+@Data
+public class ImportCheckpoint {
+
+    private static final int HASH_BUFFER_SIZE = 1 << 20;
+
+    //文件的规范路径
+    private String file;
+
+    private String sheetName;
+
+    private int sheetIdx;
+
+    private String contentHash;
+
+    //最后一个已提交的行号,-1表示还没有提交
+    private int lastRow = -1;
+
+    /**
+     * 为文件创建检查点,计算文件内容的SHA-256
+     *
+     * @param file      导入的文件
+     * @param sheetName 读取的sheet名;为空null时,按照sheetIdx读取
+     * @param sheetIdx  sheet页号,从0开始
+     */
+    public static ImportCheckpoint of(File file, String sheetName, int sheetIdx) throws IOException {
+        ImportCheckpoint checkpoint = new ImportCheckpoint();
+        checkpoint.setFile(file.getCanonicalPath());
+        checkpoint.setSheetName(sheetName == null ? "" : sheetName);
+        checkpoint.setSheetIdx(sheetIdx);
+        checkpoint.setContentHash(hash(file));
+        return checkpoint;
+    }
+
+    /**
+     * 读取检查点文件
+     *
+     * @return 文件不存在时返回null
+     */
+    public static ImportCheckpoint load(File path) throws IOException {
+        if (!path.exists()) return null;
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(path.toPath(), StandardCharsets.UTF_8)) {
+            props.load(reader);
+        }
+        ImportCheckpoint checkpoint = new ImportCheckpoint();
+        checkpoint.setFile(props.getProperty("file"));
+        checkpoint.setSheetName(props.getProperty("sheetName", ""));
+        checkpoint.setSheetIdx(Integer.parseInt(props.getProperty("sheetIdx", "0")));
+        checkpoint.setContentHash(props.getProperty("contentHash"));
+        checkpoint.setLastRow(Integer.parseInt(props.getProperty("lastRow", "-1")));
+        return checkpoint;
+    }
+
+    /**
+     * 是否为同一个文件的同一个sheet,且文件内容没有变化
+     */
+    public boolean isSameSource(ImportCheckpoint other) {
+        if (other == null || file == null || contentHash == null) return false;
+        boolean byName = !sheetName.isEmpty();
+        return file.equals(other.file)
+                && contentHash.equals(other.contentHash)
+                && sheetName.equals(other.sheetName)
+                && (byName || sheetIdx == other.sheetIdx);
+    }
+
+    /**
+     * 写入临时文件并force到磁盘后,原子替换检查点文件
+     */
+    public void save(File path) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("file", file);
+        props.setProperty("sheetName", sheetName);
+        props.setProperty("sheetIdx", String.valueOf(sheetIdx));
+        props.setProperty("contentHash", contentHash);
+        props.setProperty("lastRow", String.valueOf(lastRow));
+        Path target = path.getAbsoluteFile().toPath();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            props.store(out, null);
+            out.flush();
+            channel.force(true);
+        }
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 文件内容的SHA-256,十六进制
+     */
+    static String hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,483 @@
+package com.Noah.utils;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Excel到数据库的流式导入
+ * <p>
+ * 读取、校验插入、生成结果报告三个阶段各占一个线程,阶段之间用有界队列连接,
+ * 下游处理不过来时上游阻塞,内存中最多保留queueCapacity行,与文件大小无关。
+ * 报告逐行写入xlsx,每行的success列在该行所在批次执行后确定。
+ * parallelism大于1时,每commitSize行为一块,由{@link ParallelLoader}在多个连接上并行写入,
+ * 每块一个事务;报告仍按读取顺序输出。
+ * <p>
+ * 设置检查点文件后,每次提交后把已提交到的行号记入{@link ImportCheckpoint},导入成功后删除。
+ * 中途失败后对同一文件重新导入时,跳过已提交的行,从第一个未提交的行继续,报告中只有继续导入的行。
+ */
+@Slf4j
+public class ImportPipeline {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+    public static final String SUCCESS_COLUMN = "success";
+
+    //队列结束标记
+    private static final RowItem END = new RowItem(-1, null);
+
+    private final ConnectionPool pool;
+
+    private final String insertSql;
+
+    private final int batchSize;
+
+    private final int commitSize;
+
+    private final int queueCapacity;
+
+    private final int parallelism;
+
+    private File checkpointFile;
+
+    /**
+     * 行的校验与查找
+     */
+    public interface RowProcessor {
+
+        /**
+         * @param rowNum 行号
+         * @param row    行数据,可以写入报告需要的列
+         * @return 插入参数,按占位符顺序;返回null表示不插入,报告中success为false
+         */
+        Object[] process(int rowNum, Map<String, Object> row) throws Exception;
+    }
+
+    @Data
+    public static class PipelineResult {
+
+        private int readCount;
+
+        private int successCount;
+
+        //插入失败的行数
+        private int failureCount;
+
+        //校验未通过、未插入的行数
+        private int skipCount;
+
+        private long elapsedMillis;
+
+        //从检查点继续导入时,之前已提交到的行号;从头导入时为-1
+        private int resumedAfterRow = -1;
+    }
+
+    /**
+     * 并行写入时的一块数据
+     */
+    private static class Chunk {
+
+        //块内所有行,含未插入的行,用于按顺序输出报告
+        final List<RowItem> items = new ArrayList<>();
+
+        final List<Integer> rowNums = new ArrayList<>();
+
+        final List<Object[]> params = new ArrayList<>();
+
+        Future<BatchInserter.BatchResult> future;
+    }
+
+    /**
+     * 按提交顺序推进检查点
+     */
+    private class Progress {
+
+        final ImportCheckpoint checkpoint;
+
+        //有块被整体放弃时不再推进,重启后从该块重新导入;块内每行都是行级失败时照常推进
+        boolean stopped;
+
+        Progress(ImportCheckpoint checkpoint) {
+            this.checkpoint = checkpoint;
+        }
+
+        /**
+         * 行号不大于rowNum的行都已提交或已有结果
+         */
+        void committed(int rowNum) throws IOException {
+            if (checkpoint == null || stopped || rowNum <= checkpoint.getLastRow()) return;
+            checkpoint.setLastRow(rowNum);
+            checkpoint.save(checkpointFile);
+        }
+    }
+
+    private static class RowItem {
+
+        final int rowNum;
+
+        final Map<String, Object> row;
+
+        RowItem(int rowNum, Map<String, Object> row) {
+            this.rowNum = rowNum;
+            this.row = row;
+        }
+    }
+
+    public ImportPipeline(ConnectionPool pool, String insertSql) {
+        this(pool, insertSql, BatchInserter.DEFAULT_BATCH_SIZE, BatchInserter.DEFAULT_COMMIT_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param pool          连接池
+     * @param insertSql     insert语句
+     * @param batchSize     每批行数
+     * @param commitSize    每次提交的行数
+     * @param queueCapacity 阶段之间队列的容量
+     */
+    public ImportPipeline(ConnectionPool pool, String insertSql, int batchSize, int commitSize, int queueCapacity) {
+        this(pool, insertSql, batchSize, commitSize, queueCapacity, 1);
+    }
+
+    /**
+     * @param pool          连接池,连接数应不小于parallelism
+     * @param insertSql     insert语句
+     * @param batchSize     每批行数
+     * @param commitSize    每次提交的行数,并行写入时为每块的行数
+     * @param queueCapacity 阶段之间队列的容量
+     * @param parallelism   并行写入的连接数,1为单连接顺序写入
+     */
+    public ImportPipeline(ConnectionPool pool, String insertSql, int batchSize, int commitSize, int queueCapacity,
+                          int parallelism) {
+        this.pool = pool;
+        this.insertSql = insertSql;
+        this.batchSize = batchSize;
+        this.commitSize = commitSize;
+        this.queueCapacity = queueCapacity;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * 设置检查点文件,为null时不记录检查点;同一时间只能有一个导入使用同一个检查点文件
+     */
+    public void setCheckpoint(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * 导入
+     *
+     * @param file              文件
+     * @param ext               扩展名
+     * @param sheetName         读取的sheet名;为空null时,按照sheetIdx读取
+     * @param sheetIdx          sheet页号,从0开始
+     * @param columnName        列名
+     * @param processor         校验与查找
+     * @param reportColumn      报告中的列,即Map中的key,可以包含success列;为null时不生成报告
+     * @param reportColumnAlign 报告中显示的列名
+     * @param report            报告输出流,由调用方关闭
+     * @return 导入结果,失败时返回null
+     */
+    public PipelineResult run(File file, String ext, String sheetName, int sheetIdx, String[] columnName,
+                              final RowProcessor processor, final String[] reportColumn,
+                              final String[] reportColumnAlign, final OutputStream report) {
+        long start = System.currentTimeMillis();
+        final ExcelMetrics.Operation op = ExcelMetrics.start(ExcelMetrics.IMPORT);
+        final BlockingQueue<RowItem> toInsert = new ArrayBlockingQueue<>(queueCapacity);
+        final BlockingQueue<RowItem> toReport = new ArrayBlockingQueue<>(queueCapacity);
+        final PipelineResult result = new PipelineResult();
+        //任一阶段失败后,读取阶段停止读取
+        final AtomicBoolean aborted = new AtomicBoolean();
+        ExecutorService executor = null;
+        try {
+            ImportCheckpoint checkpoint = checkpointFile == null ? null : openCheckpoint(file, sheetName, sheetIdx);
+            final Progress progress = new Progress(checkpoint);
+            if (checkpoint != null) {
+                result.setResumedAfterRow(checkpoint.getLastRow());
+            }
+            executor = Executors.newFixedThreadPool(2);
+            Future<Boolean> insertStage = executor.submit(() -> parallelism > 1
+                    ? insertParallel(toInsert, toReport, processor, result, aborted, progress, op)
+                    : insert(toInsert, toReport, processor, result, aborted, progress, op));
+            Future<Boolean> reportStage = executor.submit(() -> {
+                QueueIterator rows = new QueueIterator(toReport);
+                boolean ok = reportColumn == null
+                        || ExcelTools.writeSXSSFWookbook(rows, false, reportColumn, reportColumnAlign, null,
+                        SXSSFWorkbook.DEFAULT_WINDOW_SIZE, report, op);
+                if (!ok) aborted.set(true);
+                //写入失败时继续取走剩余行,避免上游阻塞
+                while (rows.hasNext()) {
+                    rows.next();
+                }
+                return ok;
+            });
+            int skipToRow = checkpoint == null ? 0 : checkpoint.getLastRow() + 1;
+            int readCount = ExcelTools.readExcel(file, ext, sheetName, sheetIdx, columnName, skipToRow, (rowNum, row) -> {
+                if (aborted.get()) {
+                    throw new IllegalStateException("导入已中止");
+                }
+                toInsert.put(new RowItem(rowNum, row));
+            }, op);
+            toInsert.put(END);
+            boolean inserted = insertStage.get();
+            boolean reported = reportStage.get();
+            if (readCount < 0 || !inserted || !reported) {
+                op.finish(false);
+                return null;
+            }
+            result.setReadCount(readCount);
+            result.setElapsedMillis(System.currentTimeMillis() - start);
+            if (checkpoint != null) {
+                Files.deleteIfExists(checkpointFile.toPath());
+            }
+            op.finish(true);
+            return result;
+        } catch (Exception e) {
+            log.error("导入失败", e);
+        } finally {
+            if (executor != null) executor.shutdownNow();
+        }
+        op.finish(false);
+        return null;
+    }
+
+    /**
+     * 读取检查点文件,与当前文件一致时从中继续,否则从头导入
+     */
+    private ImportCheckpoint openCheckpoint(File file, String sheetName, int sheetIdx) throws IOException {
+        ImportCheckpoint current = ImportCheckpoint.of(file, sheetName, sheetIdx);
+        ImportCheckpoint saved = ImportCheckpoint.load(checkpointFile);
+        if (current.isSameSource(saved)) {
+            current.setLastRow(saved.getLastRow());
+            log.info("从检查点继续导入,行{}及之前的行已提交", saved.getLastRow());
+        } else if (saved != null) {
+            log.info("检查点{}与文件{}不一致,从头导入", checkpointFile, file);
+        }
+        return current;
+    }
+
+    /**
+     * 校验插入阶段:未执行的批次中的行暂存在pending中,批次执行后按顺序送往报告
+     */
+    private boolean insert(BlockingQueue<RowItem> in, BlockingQueue<RowItem> out, RowProcessor processor,
+                           PipelineResult result, AtomicBoolean aborted, Progress progress,
+                           ExcelMetrics.Operation op) throws InterruptedException {
+        List<RowItem> pending = new ArrayList<>();
+        boolean ok = true;
+        boolean ended = false;
+        try (Connection conn = pool.getConnection();
+             BatchInserter inserter = new BatchInserter(conn, insertSql, batchSize, commitSize)) {
+            inserter.setMetrics(op);
+            int seenFailures = 0;
+            int lastRowNum = -1;
+            RowItem item;
+            while ((item = in.take()) != END) {
+                lastRowNum = item.rowNum;
+                Object[] params = processor.process(item.rowNum, item.row);
+                if (params == null) {
+                    item.row.put(SUCCESS_COLUMN, "false");
+                    result.skipCount++;
+                } else {
+                    inserter.add(item.rowNum, params);
+                }
+                pending.add(item);
+                if (inserter.getPendingCount() == 0) {
+                    seenFailures = resolve(pending, inserter.getResult(), seenFailures, out);
+                }
+                progress.committed(inserter.getCommittedRowNum());
+            }
+            ended = true;
+            BatchInserter.BatchResult batchResult = inserter.finish();
+            resolve(pending, batchResult, seenFailures, out);
+            progress.committed(lastRowNum);
+            result.successCount = batchResult.getSuccess();
+            result.failureCount = batchResult.getFailures().size();
+        } catch (Exception e) {
+            log.error("写入数据库失败", e);
+            ok = false;
+            aborted.set(true);
+            if (!ended) {
+                discard(in);
+            }
+        }
+        out.put(END);
+        return ok;
+    }
+
+    /**
+     * 并行写入:每commitSize行提交一块,最多2*parallelism块同时未完成,
+     * 按提交顺序等待各块结果并送往报告
+     */
+    private boolean insertParallel(BlockingQueue<RowItem> in, BlockingQueue<RowItem> out, RowProcessor processor,
+                                   PipelineResult result, AtomicBoolean aborted, Progress progress,
+                                   ExcelMetrics.Operation op) throws InterruptedException {
+        Deque<Chunk> inflight = new ArrayDeque<>();
+        BatchInserter.BatchResult total = new BatchInserter.BatchResult();
+        boolean ok = true;
+        boolean ended = false;
+        try (ParallelLoader loader = new ParallelLoader(pool, insertSql, parallelism, batchSize,
+                ParallelLoader.DEFAULT_MAX_RETRIES)) {
+            loader.setMetrics(op);
+            Chunk chunk = new Chunk();
+            RowItem item;
+            while ((item = in.take()) != END) {
+                Object[] params = processor.process(item.rowNum, item.row);
+                if (params == null) {
+                    item.row.put(SUCCESS_COLUMN, "false");
+                    result.skipCount++;
+                } else {
+                    chunk.rowNums.add(item.rowNum);
+                    chunk.params.add(params);
+                }
+                chunk.items.add(item);
+                //跳过的行也计入块的大小,否则大部分行被跳过时块无限增长,报告和检查点迟迟不推进
+                if (chunk.items.size() >= commitSize) {
+                    start(chunk, loader);
+                    inflight.add(chunk);
+                    chunk = new Chunk();
+                    //已完成的块及时取走,检查点随之推进
+                    while (!inflight.isEmpty()
+                            && (inflight.size() >= 2 * parallelism || inflight.peek().future.isDone())) {
+                        complete(inflight.poll(), total, out, progress);
+                    }
+                }
+            }
+            ended = true;
+            if (!chunk.items.isEmpty()) {
+                start(chunk, loader);
+                inflight.add(chunk);
+            }
+            while (!inflight.isEmpty()) {
+                complete(inflight.poll(), total, out, progress);
+            }
+            result.successCount = total.getSuccess();
+            result.failureCount = total.getFailures().size();
+        } catch (Exception e) {
+            log.error("写入数据库失败", e);
+            ok = false;
+            aborted.set(true);
+            settle(inflight, progress);
+            if (!ended) {
+                discard(in);
+            }
+        }
+        out.put(END);
+        return ok;
+    }
+
+    /**
+     * 提交块;只有跳过的行时不必占用连接
+     */
+    private static void start(Chunk chunk, ParallelLoader loader) {
+        chunk.future = chunk.rowNums.isEmpty()
+                ? CompletableFuture.completedFuture(new BatchInserter.BatchResult())
+                : loader.submit(chunk.rowNums, chunk.params);
+    }
+
+    /**
+     * 失败后等待已提交的块写完并推进检查点,不再输出报告
+     */
+    private static void settle(Deque<Chunk> inflight, Progress progress) throws InterruptedException {
+        Chunk chunk;
+        while ((chunk = inflight.poll()) != null) {
+            BatchInserter.BatchResult chunkResult = ParallelLoader.getResult(chunk.future);
+            try {
+                advance(chunk, chunkResult, progress);
+            } catch (IOException e) {
+                log.error("保存检查点失败", e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 等待块的结果并送往报告;块按提交顺序完成,之前的块都已提交,检查点推进到块的最后一行。
+     * 块被整体放弃多为连接中断等与数据无关的错误,此后不再推进检查点
+     */
+    private static void complete(Chunk chunk, BatchInserter.BatchResult total, BlockingQueue<RowItem> out,
+                                 Progress progress) throws InterruptedException, IOException {
+        BatchInserter.BatchResult chunkResult = ParallelLoader.getResult(chunk.future);
+        ParallelLoader.merge(total, chunkResult);
+        advance(chunk, chunkResult, progress);
+        resolve(chunk.items, chunkResult, 0, out);
+    }
+
+    private static void advance(Chunk chunk, BatchInserter.BatchResult chunkResult, Progress progress)
+            throws IOException {
+        if (chunkResult.isAborted()) {
+            progress.stopped = true;
+        }
+        progress.committed(chunk.items.get(chunk.items.size() - 1).rowNum);
+    }
+
+    private static void discard(BlockingQueue<RowItem> in) throws InterruptedException {
+        while (in.take() != END) {
+            //丢弃
+        }
+    }
+
+    /**
+     * 根据批次结果填写success列,并送往报告
+     *
+     * @return 已处理的失败数
+     */
+    private static int resolve(List<RowItem> pending, BatchInserter.BatchResult batchResult, int seenFailures,
+                               BlockingQueue<RowItem> out) throws InterruptedException {
+        List<BatchInserter.RowFailure> failures = batchResult.getFailures();
+        Set<Integer> failed = new HashSet<>();
+        for (int i = seenFailures; i < failures.size(); i++) {
+            failed.add(failures.get(i).getRowNum());
+        }
+        for (RowItem item : pending) {
+            if (!item.row.containsKey(SUCCESS_COLUMN)) {
+                item.row.put(SUCCESS_COLUMN, failed.contains(item.rowNum) ? "false" : "true");
+            }
+            out.put(item);
+        }
+        pending.clear();
+        return failures.size();
+    }
+
+    /**
+     * 从队列逐行读取,直到结束标记
+     */
+    private static class QueueIterator implements Iterator<Map<String, Object>> {
+
+        private final BlockingQueue<RowItem> queue;
+
+        private RowItem next;
+
+        QueueIterator(BlockingQueue<RowItem> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
+            return next != END;
+        }
+
+        @Override
+        public Map<String, Object> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Map<String, Object> row = next.row;
+            next = null;
+            return row;
+        }
+    }
+}
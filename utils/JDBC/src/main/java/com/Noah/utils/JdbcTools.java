@@ -0,0 +1,31 @@
+package com.Noah.utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * JDBC工具类
+ */
+public class JdbcTools {
+
+    //非MySQL驱动流式读取时每次获取的行数
+    private static final int DEFAULT_FETCH_SIZE = 1000;
+
+    /**
+     * 创建流式读取的查询语句
+     * <p>
+     * MySQL驱动默认把整个结果集读入内存,fetchSize为Integer.MIN_VALUE时才逐行从服务器读取;
+     * 流式读取期间该连接不能执行其他语句。其他驱动使用普通的fetchSize。
+     */
+    public static PreparedStatement prepareStreaming(Connection conn, String sql) throws SQLException {
+        PreparedStatement ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(isMySql(conn) ? Integer.MIN_VALUE : DEFAULT_FETCH_SIZE);
+        return ps;
+    }
+
+    public static boolean isMySql(Connection conn) throws SQLException {
+        return conn.getMetaData().getDriverName().contains("MySQL");
+    }
+}
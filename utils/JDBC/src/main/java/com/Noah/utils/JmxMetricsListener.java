@@ -0,0 +1,222 @@
+package com.Noah.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 按操作类型汇总度量并注册为MBean,某类操作第一次完成时注册
+ */
+@Slf4j
+public class JmxMetricsListener implements ExcelMetrics.Listener {
+
+    private static final String DOMAIN = "com.Noah.utils";
+
+    private final ConcurrentMap<String, Stats> stats = new ConcurrentHashMap<>();
+
+    JmxMetricsListener() {
+    }
+
+    @Override
+    public void onComplete(ExcelMetrics.Operation operation) {
+        Stats s = stats.get(operation.getName());
+        if (s == null) {
+            Stats created = new Stats();
+            s = stats.putIfAbsent(operation.getName(), created);
+            if (s == null) {
+                s = created;
+                register(operation.getName(), created);
+            }
+        }
+        s.add(operation);
+    }
+
+    /**
+     * 某类操作的累计度量,尚未发生时返回null
+     */
+    public ExcelMetricsMXBean getStats(String name) {
+        return stats.get(name);
+    }
+
+    private static void register(String name, Stats s) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=ExcelMetrics,name=" + ObjectName.quote(name));
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(s, objectName);
+            }
+        } catch (Exception e) {
+            log.error("注册MBean失败", e);
+        }
+    }
+
+    private static class Stats implements ExcelMetricsMXBean {
+
+        private final AtomicLong operationCount = new AtomicLong();
+
+        private final AtomicLong failureCount = new AtomicLong();
+
+        private final AtomicLong rowsRead = new AtomicLong();
+
+        private final AtomicLong rowsWritten = new AtomicLong();
+
+        private final AtomicLong cellsRead = new AtomicLong();
+
+        private final AtomicLong cellsWritten = new AtomicLong();
+
+        private final AtomicLong bytesRead = new AtomicLong();
+
+        private final AtomicLong bytesWritten = new AtomicLong();
+
+        private final AtomicLong totalMillis = new AtomicLong();
+
+        private final AtomicLongArray phaseMillis = new AtomicLongArray(ExcelMetrics.Phase.values().length);
+
+        private final AtomicLong internLookups = new AtomicLong();
+
+        private final AtomicLong internHits = new AtomicLong();
+
+        private final AtomicLong maxPeakHeap = new AtomicLong();
+
+        private final AtomicReference<ExcelMetrics.Operation> last = new AtomicReference<>();
+
+        void add(ExcelMetrics.Operation operation) {
+            operationCount.incrementAndGet();
+            if (!operation.isSuccess()) failureCount.incrementAndGet();
+            rowsRead.addAndGet(operation.getRowsRead());
+            rowsWritten.addAndGet(operation.getRowsWritten());
+            cellsRead.addAndGet(operation.getCellsRead());
+            cellsWritten.addAndGet(operation.getCellsWritten());
+            bytesRead.addAndGet(operation.getBytesRead());
+            bytesWritten.addAndGet(operation.getBytesWritten());
+            totalMillis.addAndGet(operation.getElapsedMillis());
+            for (ExcelMetrics.Phase phase : ExcelMetrics.Phase.values()) {
+                phaseMillis.addAndGet(phase.ordinal(), operation.getPhaseMillis(phase));
+            }
+            internLookups.addAndGet(operation.getInternLookups());
+            internHits.addAndGet(operation.getInternHits());
+            long peak;
+            while (operation.getPeakHeapBytes() > (peak = maxPeakHeap.get())
+                    && !maxPeakHeap.compareAndSet(peak, operation.getPeakHeapBytes())) {
+                //重试
+            }
+            last.set(operation);
+        }
+
+        @Override
+        public long getOperationCount() {
+            return operationCount.get();
+        }
+
+        @Override
+        public long getFailureCount() {
+            return failureCount.get();
+        }
+
+        @Override
+        public long getRowsRead() {
+            return rowsRead.get();
+        }
+
+        @Override
+        public long getRowsWritten() {
+            return rowsWritten.get();
+        }
+
+        @Override
+        public long getCellsRead() {
+            return cellsRead.get();
+        }
+
+        @Override
+        public long getCellsWritten() {
+            return cellsWritten.get();
+        }
+
+        @Override
+        public long getBytesRead() {
+            return bytesRead.get();
+        }
+
+        @Override
+        public long getBytesWritten() {
+            return bytesWritten.get();
+        }
+
+        @Override
+        public long getTotalMillis() {
+            return totalMillis.get();
+        }
+
+        @Override
+        public Map<String, Long> getPhaseMillis() {
+            Map<String, Long> map = new LinkedHashMap<>();
+            for (ExcelMetrics.Phase phase : ExcelMetrics.Phase.values()) {
+                map.put(phase.name(), phaseMillis.get(phase.ordinal()));
+            }
+            return map;
+        }
+
+        @Override
+        public long getInternLookups() {
+            return internLookups.get();
+        }
+
+        @Override
+        public long getInternHits() {
+            return internHits.get();
+        }
+
+        @Override
+        public double getInternHitRate() {
+            long lookups = internLookups.get();
+            return lookups == 0 ? 0 : (double) internHits.get() / lookups;
+        }
+
+        @Override
+        public long getMaxPeakHeapBytes() {
+            return maxPeakHeap.get();
+        }
+
+        @Override
+        public long getLastRowsPerSecond() {
+            ExcelMetrics.Operation operation = last.get();
+            return operation == null ? 0 : operation.getRowsPerSecond();
+        }
+
+        @Override
+        public String getLastOperation() {
+            ExcelMetrics.Operation operation = last.get();
+            return operation == null ? null : operation.toString();
+        }
+
+        @Override
+        public void reset() {
+            operationCount.set(0);
+            failureCount.set(0);
+            rowsRead.set(0);
+            rowsWritten.set(0);
+            cellsRead.set(0);
+            cellsWritten.set(0);
+            bytesRead.set(0);
+            bytesWritten.set(0);
+            totalMillis.set(0);
+            for (int i = 0; i < phaseMillis.length(); i++) {
+                phaseMillis.set(i, 0);
+            }
+            internLookups.set(0);
+            internHits.set(0);
+            maxPeakHeap.set(0);
+            last.set(null);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.Noah.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 字符串对(如user_code, role_code)的去重集合
+ * <p>
+ * 两列的值分别编号为int,一对值合成一个long,存放在开放寻址的long[]中,
+ * 每对占一个long槽位(装载因子不超过0.6),没有对象开销;百万级的对主要占用在两列不同值的编号表上。
+ * 非线程安全。
+ */
+@Slf4j
+public class PairSet {
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private static final int DEFAULT_EXPECTED_SIZE = 1024;
+
+    //两列的值->编号,编号从1开始,保证合成的long不为0
+    private final Map<String, Integer> firstIds = new HashMap<>();
+
+    private final Map<String, Integer> secondIds = new HashMap<>();
+
+    //0表示空位
+    private long[] keys;
+
+    private int size;
+
+    private int threshold;
+
+    public PairSet() {
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+    /**
+     * @param expectedSize 预计的对数
+     */
+    public PairSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max((int) (expectedSize / LOAD_FACTOR), 16) - 1) << 1;
+        keys = new long[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * 流式读取查询结果的前两列
+     *
+     * @param conn 连接
+     * @param sql  查询语句,如select user_code, role_code from auth_contact_user_role
+     * @return 集合,失败时返回null
+     */
+    public static PairSet load(Connection conn, String sql) {
+        try (PreparedStatement ps = JdbcTools.prepareStreaming(conn, sql);
+             ResultSet rs = ps.executeQuery()) {
+            PairSet set = new PairSet();
+            while (rs.next()) {
+                set.add(rs.getString(1), rs.getString(2));
+            }
+            return set;
+        } catch (SQLException e) {
+            log.error("读取数据失败", e);
+        }
+        return null;
+    }
+
+    /**
+     * 加入一对值
+     *
+     * @return 之前不存在时返回true
+     */
+    public boolean add(String first, String second) {
+        if (size >= threshold) {
+            rehash(keys.length << 1);
+        }
+        return insert(keys, key(id(firstIds, first), id(secondIds, second)));
+    }
+
+    public boolean contains(String first, String second) {
+        Integer f = firstIds.get(first);
+        Integer s = secondIds.get(second);
+        if (f == null || s == null) return false;
+        long key = key(f, s);
+        int mask = keys.length - 1;
+        for (int i = hash(key) & mask; keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) return true;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private boolean insert(long[] table, long key) {
+        int mask = table.length - 1;
+        int i = hash(key) & mask;
+        while (table[i] != 0) {
+            if (table[i] == key) return false;
+            i = (i + 1) & mask;
+        }
+        table[i] = key;
+        size++;
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = keys;
+        keys = new long[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+        size = 0;
+        for (long key : old) {
+            if (key != 0) insert(keys, key);
+        }
+    }
+
+    private static int id(Map<String, Integer> ids, String value) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = ids.size() + 1;
+            ids.put(value, id);
+        }
+        return id;
+    }
+
+    private static long key(int first, int second) {
+        return ((long) first << 32) | (second & 0xffffffffL);
+    }
+
+    /**
+     * 编号是连续的小整数,需要打散高低位
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    @Override
+    public String toString() {
+        return "PairSet(size=" + size + ", capacity=" + keys.length + ", first=" + firstIds.size()
+                + ", second=" + secondIds.size() + ")";
+    }
+}
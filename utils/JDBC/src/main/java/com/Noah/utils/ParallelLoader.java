@@ -0,0 +1,164 @@
+package com.Noah.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多连接并行写入
+ * <p>
+ * 数据按块提交,每块从连接池借一个连接,在一个事务中批量写入后提交;
+ * 块之间并行执行,并行数为parallelism。遇到死锁或锁等待超时时回滚整块并重试,
+ * 超过重试次数或其他错误导致整块放弃时,块内所有行记为失败,结果的aborted为true。
+ */
+@Slf4j
+public class ParallelLoader implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    //重试前等待的基础时间,毫秒,按重试次数递增
+    private static final long RETRY_BACKOFF = 50;
+
+    private final ConnectionPool pool;
+
+    private final String insertSql;
+
+    private final int batchSize;
+
+    private final int maxRetries;
+
+    private final ExecutorService executor;
+
+    private final AtomicLong retryCount = new AtomicLong();
+
+    private volatile ExcelMetrics.Operation metrics = ExcelMetrics.Operation.NONE;
+
+    /**
+     * @param pool        连接池,连接数应不小于parallelism
+     * @param insertSql   insert语句
+     * @param parallelism 并行数
+     * @param batchSize   块内每批行数
+     * @param maxRetries  死锁时每块最多重试的次数
+     */
+    public ParallelLoader(ConnectionPool pool, String insertSql, int parallelism, int batchSize, int maxRetries) {
+        this.pool = pool;
+        this.insertSql = insertSql;
+        this.batchSize = batchSize;
+        this.maxRetries = maxRetries;
+        this.executor = Executors.newFixedThreadPool(parallelism);
+    }
+
+    /**
+     * 提交一块数据,异步写入
+     *
+     * @param rowNums 各行行号,失败时原样返回
+     * @param params  各行参数
+     * @return 该块的结果
+     */
+    public Future<BatchInserter.BatchResult> submit(final List<Integer> rowNums, final List<Object[]> params) {
+        return executor.submit(() -> loadChunk(rowNums, params));
+    }
+
+    /**
+     * 分块并行写入全部数据,行号为在rows中的下标
+     *
+     * @param rows      各行参数
+     * @param chunkSize 每块行数
+     * @return 汇总结果
+     */
+    public BatchInserter.BatchResult load(List<Object[]> rows, int chunkSize) throws InterruptedException {
+        List<Future<BatchInserter.BatchResult>> futures = new ArrayList<>();
+        for (int start = 0; start < rows.size(); start += chunkSize) {
+            int end = Math.min(start + chunkSize, rows.size());
+            List<Integer> rowNums = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                rowNums.add(i);
+            }
+            futures.add(submit(rowNums, rows.subList(start, end)));
+        }
+        BatchInserter.BatchResult total = new BatchInserter.BatchResult();
+        for (Future<BatchInserter.BatchResult> future : futures) {
+            merge(total, getResult(future));
+        }
+        return total;
+    }
+
+    /**
+     * 合并块的结果
+     */
+    public static void merge(BatchInserter.BatchResult total, BatchInserter.BatchResult chunk) {
+        total.setSuccess(total.getSuccess() + chunk.getSuccess());
+        total.getFailures().addAll(chunk.getFailures());
+        total.setAborted(total.isAborted() || chunk.isAborted());
+    }
+
+    /**
+     * 等待块的结果,loadChunk不抛出异常,这里的异常只可能来自中断
+     */
+    public static BatchInserter.BatchResult getResult(Future<BatchInserter.BatchResult> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 各块写入的耗时计入op的DB_BATCH阶段,多个块并行时为累计值
+     */
+    public void setMetrics(ExcelMetrics.Operation op) {
+        this.metrics = op;
+    }
+
+    /**
+     * 死锁重试的总次数
+     */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private BatchInserter.BatchResult loadChunk(List<Integer> rowNums, List<Object[]> params) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try (Connection conn = pool.getConnection()) {
+                //整块一个事务,只在finish时提交
+                try (BatchInserter inserter = new BatchInserter(conn, insertSql, batchSize, Integer.MAX_VALUE)) {
+                    inserter.setMetrics(metrics);
+                    for (int i = 0; i < rowNums.size(); i++) {
+                        inserter.add(rowNums.get(i), params.get(i));
+                    }
+                    return inserter.finish();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    if (!BatchInserter.isDeadlock(e) || attempt >= maxRetries) {
+                        log.error("写入失败,行" + rowNums.get(0) + "起共" + rowNums.size() + "行", e);
+                        return failAll(rowNums, e.getMessage());
+                    }
+                }
+            } catch (SQLException e) {
+                log.error("写入失败,行" + rowNums.get(0) + "起共" + rowNums.size() + "行", e);
+                return failAll(rowNums, e.getMessage());
+            }
+            retryCount.incrementAndGet();
+            Thread.sleep(RETRY_BACKOFF * (attempt + 1));
+        }
+    }
+
+    private static BatchInserter.BatchResult failAll(List<Integer> rowNums, String message) {
+        BatchInserter.BatchResult result = new BatchInserter.BatchResult();
+        result.setAborted(true);
+        for (Integer rowNum : rowNums) {
+            result.getFailures().add(new BatchInserter.RowFailure(rowNum, message));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,268 @@
+package com.Noah.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 参照数据缓存(如用户名->用户编码、角色名->角色编码)
+ * <p>
+ * 同名缓存在整个JVM内共享。数据量不超过maxSize时整表加载为哈希索引,过期后整体重新加载,
+ * 超过maxSize时改为按key查询,结果放入容量为maxSize的LRU中,不存在的key同样缓存。
+ * <p>
+ * 过期后由一个线程重新加载,其余线程不等待,继续读取旧数据;重新加载失败时保留旧数据,到期后再重试。
+ * 首次加载时没有旧数据,各线程等待加载完成;首次加载失败不缓存,抛出IllegalStateException,下次访问时重试,
+ * 避免在整个过期时间内把所有key都当作不存在。
+ */
+@Slf4j
+public class ReferenceCache {
+
+    private static final ConcurrentMap<String, ReferenceCache> CACHES = new ConcurrentHashMap<>();
+
+    //LRU中表示key不存在
+    private static final String ABSENT = new String();
+
+    private final String name;
+
+    private final Loader loader;
+
+    private final int maxSize;
+
+    private final long ttlMillis;
+
+    private volatile State state;
+
+    //同一时间只有一个线程加载
+    private final ReentrantLock loadLock = new ReentrantLock();
+
+    /**
+     * 一次加载的结果,整表模式下all非空,按key查询模式下lru非空
+     */
+    private static class State {
+
+        final Map<String, String> all;
+
+        final Map<String, String> lru;
+
+        final long loadedAt;
+
+        State(Map<String, String> all, Map<String, String> lru, long loadedAt) {
+            this.all = all;
+            this.lru = lru;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * 数据加载
+     */
+    public interface Loader {
+
+        /**
+         * 整表加载
+         *
+         * @param limit 最多读取的行数
+         * @return key->value,行数超过limit时返回null
+         */
+        Map<String, String> loadAll(int limit) throws Exception;
+
+        /**
+         * 按key查询
+         *
+         * @return 不存在时返回null
+         */
+        String load(String key) throws Exception;
+    }
+
+    /**
+     * 获取连接,由调用方负责关闭
+     */
+    public interface ConnectionFactory {
+        Connection getConnection() throws SQLException;
+    }
+
+    private ReferenceCache(String name, Loader loader, int maxSize, long ttlMillis) {
+        this.name = name;
+        this.loader = loader;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 获取共享缓存,同名缓存只创建一次,之后的参数被忽略
+     *
+     * @param name      缓存名
+     * @param loader    数据加载
+     * @param maxSize   最多缓存的条数
+     * @param ttlMillis 过期时间,过期后重新加载
+     */
+    public static ReferenceCache of(String name, Loader loader, int maxSize, long ttlMillis) {
+        ReferenceCache cache = CACHES.get(name);
+        if (cache == null) {
+            cache = new ReferenceCache(name, loader, maxSize, ttlMillis);
+            ReferenceCache existing = CACHES.putIfAbsent(name, cache);
+            if (existing != null) cache = existing;
+        }
+        return cache;
+    }
+
+    /**
+     * 从表中读取两列的加载器
+     *
+     * @param factory     连接
+     * @param table       表名
+     * @param keyColumn   key列
+     * @param valueColumn value列
+     */
+    public static Loader jdbcLoader(final ConnectionFactory factory, String table, String keyColumn, String valueColumn) {
+        final String all = "select " + keyColumn + ", " + valueColumn + " from " + table;
+        final String one = all + " where " + keyColumn + " = ?";
+        return new Loader() {
+            @Override
+            public Map<String, String> loadAll(int limit) throws SQLException {
+                try (Connection conn = factory.getConnection();
+                     PreparedStatement ps = conn.prepareStatement(all)) {
+                    ps.setMaxRows(limit + 1);
+                    Map<String, String> map = new HashMap<>();
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            if (map.size() == limit) return null;
+                            map.put(rs.getString(1), rs.getString(2));
+                        }
+                    }
+                    return map;
+                }
+            }
+
+            @Override
+            public String load(String key) throws SQLException {
+                try (Connection conn = factory.getConnection();
+                     PreparedStatement ps = conn.prepareStatement(one)) {
+                    ps.setString(1, key);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return rs.next() ? rs.getString(2) : null;
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * 查询key对应的值
+     *
+     * @return 不存在或按key查询失败时返回null
+     * @throws IllegalStateException 首次整表加载失败
+     */
+    public String get(String key) {
+        if (key == null) return null;
+        State current = current();
+        if (current.all != null) return current.all.get(key);
+        Map<String, String> cached = current.lru;
+        String value = cached.get(key);
+        if (value == null) {
+            try {
+                value = loader.load(key);
+            } catch (Exception e) {
+                log.error("参照数据" + name + "查询失败", e);
+                return null;
+            }
+            cached.put(key, value == null ? ABSENT : value);
+        }
+        return value == ABSENT ? null : value;
+    }
+
+    public boolean contains(String key) {
+        return get(key) != null;
+    }
+
+    /**
+     * 整表模式下的条数,按key查询模式下为LRU中的条数
+     */
+    public int size() {
+        State current = current();
+        return current.all != null ? current.all.size() : current.lru.size();
+    }
+
+    /**
+     * 是否整表加载
+     */
+    public boolean isFullyLoaded() {
+        return current().all != null;
+    }
+
+    /**
+     * 使缓存过期,下次访问时重新加载,用于数据变更后
+     */
+    public void invalidate() {
+        State current = state;
+        if (current != null) state = new State(current.all, current.lru, 0);
+    }
+
+    /**
+     * 移除共享缓存
+     */
+    public static void remove(String name) {
+        CACHES.remove(name);
+    }
+
+    private State current() {
+        State current = state;
+        if (isFresh(current)) {
+            return current;
+        }
+        if (current != null) {
+            //已有旧数据时不等待,其他线程正在加载则直接读取旧数据
+            if (!loadLock.tryLock()) {
+                return current;
+            }
+        } else {
+            loadLock.lock();
+        }
+        try {
+            current = state;
+            if (isFresh(current)) {
+                return current;
+            }
+            Map<String, String> all;
+            try {
+                all = loader.loadAll(maxSize);
+            } catch (Exception e) {
+                if (current == null) {
+                    throw new IllegalStateException("参照数据" + name + "加载失败", e);
+                }
+                //保留旧数据,到期后再重试
+                log.error("参照数据" + name + "加载失败", e);
+                state = new State(current.all, current.lru, System.currentTimeMillis());
+                return state;
+            }
+            state = all != null ? new State(all, null, System.currentTimeMillis())
+                    : new State(null, newLru(maxSize), System.currentTimeMillis());
+            return state;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    private boolean isFresh(State current) {
+        return current != null && current.loadedAt != 0 && System.currentTimeMillis() - current.loadedAt < ttlMillis;
+    }
+
+    private static Map<String, String> newLru(final int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+}
@@ -0,0 +1,115 @@
+package com.Noah.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * 读取时按列对单元格值去重
+ * <p>
+ * 导入表中很多列只有少量不同的值(如角色),但内联字符串、数值、清理过空白的值以及csv的每个字段,
+ * 解析时都会生成新的String。每列维护一个字典,相同的值返回字典中的实例,整表读入或在队列中缓冲时,
+ * 这些列的每个不同值只保留一份。前CHECK_LOOKUPS次查找中不同值超过一半的列(如用户名)视为高基数列,
+ * 释放字典不再去重;字典最多MAX_SIZE个值,满后只查不增。
+ * <p>
+ * xlsx与xls的共享字符串直接按共享字符串表的下标缓存清理后的值,不必每次清理,也不必查字典。
+ * 非线程安全,每个读取器一个。
+ */
+final class ValueInterner {
+
+    static final int CHECK_LOOKUPS = 4096;
+
+    static final int MAX_SIZE = 1 << 16;
+
+    //为null的列不去重
+    private final Map<String, String>[] dicts;
+
+    private final int[] columnLookups;
+
+    //共享字符串表下标 -> 清理后的值
+    private String[] shared = new String[0];
+
+    private long lookupCount;
+
+    private long hitCount;
+
+    @SuppressWarnings("unchecked")
+    ValueInterner(int columns) {
+        dicts = (Map<String, String>[]) new Map<?, ?>[columns];
+        for (int i = 0; i < columns; i++) {
+            dicts[i] = new HashMap<>();
+        }
+        columnLookups = new int[columns];
+    }
+
+    /**
+     * 返回与value相等的已有实例,没有时记入字典并返回value
+     *
+     * @param col   列号
+     * @param value 清理后的值
+     */
+    String intern(int col, String value) {
+        if (value.isEmpty()) return "";
+        Map<String, String> dict = dicts[col];
+        if (dict == null) return value;
+        lookupCount++;
+        String existing = dict.get(value);
+        if (existing != null) {
+            hitCount++;
+            value = existing;
+        } else if (dict.size() < MAX_SIZE) {
+            dict.put(value, value);
+        }
+        if (++columnLookups[col] == CHECK_LOOKUPS && dict.size() > CHECK_LOOKUPS / 2) {
+            dicts[col] = null;
+        }
+        return value;
+    }
+
+    /**
+     * 共享字符串单元格的值,同一下标只清理一次
+     *
+     * @param index   共享字符串表的下标
+     * @param entries 按下标读取原始值
+     */
+    String shared(int index, IntFunction<String> entries) {
+        lookupCount++;
+        if (index >= shared.length) {
+            shared = Arrays.copyOf(shared, Math.max(index + 1, shared.length * 2));
+        }
+        String value = shared[index];
+        if (value != null) {
+            hitCount++;
+            return value;
+        }
+        value = ExcelTools.cleanCellValue(entries.apply(index));
+        if (value.isEmpty()) value = "";
+        shared[index] = value;
+        return value;
+    }
+
+    /**
+     * 预先按共享字符串表的大小分配缓存
+     */
+    void expectShared(int count) {
+        if (count > shared.length) {
+            shared = Arrays.copyOf(shared, count);
+        }
+    }
+
+    long getLookupCount() {
+        return lookupCount;
+    }
+
+    long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * 记入度量
+     */
+    void report(ExcelMetrics.Operation op) {
+        op.addInterned(lookupCount, hitCount);
+    }
+}
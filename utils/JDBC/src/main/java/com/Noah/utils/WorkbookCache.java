@@ -0,0 +1,326 @@
+package com.Noah.utils;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * 读取结果的缓存
+ * <p>
+ * 同一个模板、参照文件反复读取时,直接返回上次的解析结果。以文件的规范路径、大小、修改时间、sheet与列名为key,
+ * 文件被改写后key随之变化,下次读取时重新解析并替换旧结果。修改时间精度不够(如同一秒内改写且大小不变)时
+ * 可开启verifyContent,改为比较文件内容的SHA-256,每次读取都要完整读一遍文件,但仍比解析快得多。
+ * <p>
+ * 按估算的堆内存占用做LRU淘汰,总量不超过maxBytes,单个结果超过maxBytes时不缓存。
+ * 多个调用方共享同一份结果:返回的List与Map不可修改,返回的ColumnTable不应再调用addRow。
+ * 可在多个线程中同时使用;同一文件并发未命中时只解析一次,其余线程等待该次的结果。
+ */
+@Slf4j
+public class WorkbookCache {
+
+    //Map形式与列式存储的结果分开缓存
+    private static final int ROWS = 0;
+
+    private static final int COLUMNS = 1;
+
+    private final long maxBytes;
+
+    private final boolean verifyContent;
+
+    //按访问顺序排列,最久未访问的在前
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    //正在解析的key
+    private final Map<Key, FutureTask<Object>> loading = new HashMap<>();
+
+    private long bytes;
+
+    private long hitCount;
+
+    private long missCount;
+
+    private long loadCount;
+
+    private long evictionCount;
+
+    @Data
+    public static class CacheStats {
+
+        private long hitCount;
+
+        //未命中的读取,含等待其他线程解析结果的
+        private long missCount;
+
+        //实际解析的次数
+        private long loadCount;
+
+        private long evictionCount;
+
+        private int entryCount;
+
+        //缓存结果估算的堆内存占用
+        private long estimatedBytes;
+
+        private long maxBytes;
+
+        public double getHitRate() {
+            long total = hitCount + missCount;
+            return total == 0 ? 0 : (double) hitCount / total;
+        }
+    }
+
+    @Data
+    private static class Key {
+
+        private final int kind;
+
+        private final String path;
+
+        private final long length;
+
+        private final long lastModified;
+
+        //未开启verifyContent时为null
+        private final String contentHash;
+
+        private final String sheetName;
+
+        private final int sheetIdx;
+
+        private final List<String> columnName;
+
+        /**
+         * 是否为同一文件同一sheet同样列的结果,不比较文件版本
+         */
+        boolean sameTarget(Key other) {
+            return kind == other.kind && sheetIdx == other.sheetIdx && path.equals(other.path)
+                    && sheetName.equals(other.sheetName) && columnName.equals(other.columnName);
+        }
+    }
+
+    private static class Entry {
+
+        final Object value;
+
+        final long bytes;
+
+        Entry(Object value, long bytes) {
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * 以修改时间与大小判断文件是否变化
+     *
+     * @param maxBytes 缓存结果的总大小上限,按估算的堆内存占用计
+     */
+    public WorkbookCache(long maxBytes) {
+        this(maxBytes, false);
+    }
+
+    /**
+     * @param maxBytes      缓存结果的总大小上限,按估算的堆内存占用计
+     * @param verifyContent 是否以文件内容的SHA-256判断文件是否变化
+     */
+    public WorkbookCache(long maxBytes, boolean verifyContent) {
+        this.maxBytes = maxBytes;
+        this.verifyContent = verifyContent;
+    }
+
+    /**
+     * 读取,结果与ExcelTools.readExcel一致,但不可修改
+     *
+     * @param file       路径
+     * @param ext        扩展名
+     * @param sheetName  读取的sheet名;为空null时,按照sheetIdx读取
+     * @param sheetIdx   sheet页号,从0开始
+     * @param columnName 列名
+     * @return 为空时，返回null
+     */
+    @SuppressWarnings("unchecked")
+    public List<Map<String, Object>> readExcel(final File file, final String ext, final String sheetName,
+                                               final int sheetIdx, final String[] columnName) {
+        return (List<Map<String, Object>>) get(ROWS, file, sheetName, sheetIdx, columnName, () -> {
+            List<Map<String, Object>> rows = ExcelTools.readExcel(file, ext, sheetName, sheetIdx, columnName);
+            return rows == null ? null : readOnly(rows);
+        });
+    }
+
+    /**
+     * 按列读取,结果与ExcelTools.readExcelColumns一致,多个调用方共享
+     *
+     * @param file       路径
+     * @param ext        扩展名
+     * @param sheetName  读取的sheet名;为空null时,按照sheetIdx读取
+     * @param sheetIdx   sheet页号,从0开始
+     * @param columnName 列名
+     * @return 为空时，返回null
+     */
+    public ColumnTable readExcelColumns(final File file, final String ext, final String sheetName,
+                                        final int sheetIdx, final String[] columnName) {
+        return (ColumnTable) get(COLUMNS, file, sheetName, sheetIdx, columnName,
+                () -> ExcelTools.readExcelColumns(file, ext, sheetName, sheetIdx, columnName));
+    }
+
+    /**
+     * 移除该文件的全部结果
+     */
+    public synchronized void invalidate(File file) {
+        String path;
+        try {
+            path = file.getCanonicalPath();
+        } catch (IOException e) {
+            path = file.getAbsolutePath();
+        }
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (e.getKey().path.equals(path)) {
+                bytes -= e.getValue().bytes;
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized CacheStats getStats() {
+        CacheStats stats = new CacheStats();
+        stats.setHitCount(hitCount);
+        stats.setMissCount(missCount);
+        stats.setLoadCount(loadCount);
+        stats.setEvictionCount(evictionCount);
+        stats.setEntryCount(entries.size());
+        stats.setEstimatedBytes(bytes);
+        stats.setMaxBytes(maxBytes);
+        return stats;
+    }
+
+    /**
+     * 读取结果的加载,失败时返回null
+     */
+    private interface Loader {
+        Object load();
+    }
+
+    private Object get(int kind, File file, String sheetName, int sheetIdx, String[] columnName, Loader loader) {
+        Key key;
+        try {
+            key = key(kind, file, sheetName, sheetIdx, columnName);
+        } catch (IOException e) {
+            log.error("读取文件信息失败", e);
+            return null;
+        }
+        FutureTask<Object> task;
+        boolean owner = false;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hitCount++;
+                return entry.value;
+            }
+            missCount++;
+            task = loading.get(key);
+            if (task == null) {
+                task = new FutureTask<>(loader::load);
+                loading.put(key, task);
+                loadCount++;
+                owner = true;
+            }
+        }
+        //在锁外解析,未命中不阻塞其他读取
+        Object value = null;
+        try {
+            if (owner) task.run();
+            value = task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("读取Excel失败", e.getCause());
+        } finally {
+            if (owner) {
+                synchronized (this) {
+                    if (value != null) {
+                        put(key, value, kind == ROWS ? estimateRows(value) : ((ColumnTable) value).estimateBytes());
+                    }
+                    loading.remove(key);
+                }
+            }
+        }
+        return value;
+    }
+
+    private Key key(int kind, File file, String sheetName, int sheetIdx, String[] columnName) throws IOException {
+        boolean byName = !("".equals(sheetName) || null == sheetName);
+        return new Key(kind, file.getCanonicalPath(), file.length(), file.lastModified(),
+                verifyContent && file.isFile() ? ImportCheckpoint.hash(file) : null,
+                byName ? sheetName : "", byName ? -1 : sheetIdx, Arrays.asList(columnName.clone()));
+    }
+
+    private synchronized void put(Key key, Object value, long size) {
+        //同一文件的旧版本不会再被读到,直接移除
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (e.getKey().sameTarget(key)) {
+                bytes -= e.getValue().bytes;
+                it.remove();
+            }
+        }
+        if (size > maxBytes) return;
+        entries.put(key, new Entry(value, size));
+        bytes += size;
+        it = entries.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            Map.Entry<Key, Entry> eldest = it.next();
+            bytes -= eldest.getValue().bytes;
+            it.remove();
+            evictionCount++;
+        }
+    }
+
+    private static List<Map<String, Object>> readOnly(List<Map<String, Object>> rows) {
+        List<Map<String, Object>> list = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            list.add(Collections.unmodifiableMap(row));
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * 估算List&lt;Map&gt;的堆内存占用,列名在各行之间共享,不计入
+     */
+    private static long estimateRows(Object value) {
+        List<?> rows = (List<?>) value;
+        long total = 16 + 4L * rows.size();
+        for (Object row : rows) {
+            Map<?, ?> map = (Map<?, ?>) row;
+            int capacity = 16;
+            while (map.size() > capacity * 3 / 4) {
+                capacity <<= 1;
+            }
+            //不可修改的包装、HashMap本身与table,每个条目32字节
+            total += 32 + 48 + 16 + 4L * capacity + 32L * map.size();
+            for (Object cell : map.values()) {
+                total += cell instanceof String ? estimateBytes((String) cell) : 16;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 估算字符串的堆内存占用:String对象24字节,char[]按8字节对齐
+     */
+    static long estimateBytes(String s) {
+        return 24 + ((16 + 2L * s.length() + 7) & ~7L);
+    }
+}
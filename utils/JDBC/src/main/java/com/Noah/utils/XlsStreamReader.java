@@ -0,0 +1,363 @@
+package com.Noah.utils;
+
+import org.apache.poi.hssf.eventusermodel.AbortableHSSFListener;
+import org.apache.poi.hssf.eventusermodel.EventWorkbookBuilder;
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.eventusermodel.HSSFUserException;
+import org.apache.poi.hssf.model.HSSFFormulaParser;
+import org.apache.poi.hssf.record.*;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.usermodel.DateUtil;
+
+import java.io.File;
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * 基于HSSF事件模型的xls流式读取
+ * <p>
+ * 逐条处理BIFF8记录,一行结束即回调,只保留当前行的数据,
+ * 内存占用只与行宽有关,与文件大小无关。单元格取值规则与ExcelTools.getCellValue一致。
+ * 单元格的值按列去重,共享字符串按SST下标只清理一次,见ValueInterner。
+ */
+public class XlsStreamReader {
+
+    private static final short CONTINUE = 0;
+
+    private static final short ABORT = 1;
+
+    private final File file;
+
+    private final String sheetName;
+
+    private final int sheetIdx;
+
+    private final String[] columnName;
+
+    private final int readStartRowPos;
+
+    private final ValueInterner interner;
+
+    //读取全部sheet时,逐行处理原始值
+    @FunctionalInterface
+    interface SheetValuesHandler {
+        void handle(String sheetName, int rowNum, String[] values) throws Exception;
+    }
+
+    //逐行处理原始值,numbers、dates见ExcelTools.RowCellsHandler,不保留原值时为null
+    @FunctionalInterface
+    private interface SheetCellsHandler {
+        void handle(String sheetName, int rowNum, String[] values, double[] numbers, boolean[] dates) throws Exception;
+    }
+
+    /**
+     * @param file            文件
+     * @param sheetName       读取的sheet名;为空null时,按照sheetIdx读取
+     * @param sheetIdx        sheet页号,从0开始
+     * @param columnName      列名
+     * @param readStartRowPos 从第几行开始读取
+     */
+    XlsStreamReader(File file, String sheetName, int sheetIdx, String[] columnName, int readStartRowPos) {
+        this.file = file;
+        this.sheetName = sheetName;
+        this.sheetIdx = sheetIdx;
+        this.columnName = columnName;
+        this.readStartRowPos = readStartRowPos;
+        this.interner = new ValueInterner(columnName.length);
+    }
+
+    ValueInterner getInterner() {
+        return interner;
+    }
+
+    /**
+     * 读取sheet,逐行回调
+     *
+     * @param handler 行处理
+     * @return 处理的行数
+     * @throws Exception 异常
+     */
+    public int read(ExcelTools.RowValuesHandler handler) throws Exception {
+        return process(new SheetListener((sheet, rowNum, values, numbers, dates) -> handler.handle(rowNum, values), false, false));
+    }
+
+    /**
+     * 读取sheet,逐行回调原始值及数值单元格未经取整的值
+     *
+     * @param handler 行处理
+     * @return 处理的行数
+     * @throws Exception 异常
+     */
+    int read(ExcelTools.RowCellsHandler handler) throws Exception {
+        return process(new SheetListener((sheet, rowNum, values, numbers, dates) -> handler.handle(rowNum, values, numbers, dates), false, true));
+    }
+
+    /**
+     * 一次解析读取全部sheet,逐行回调;BIFF8的各sheet顺序存放在同一个流中,只能顺序解析
+     *
+     * @param handler 行处理
+     * @return 处理的行数
+     * @throws Exception 异常
+     */
+    int readAllSheets(SheetValuesHandler handler) throws Exception {
+        return process(new SheetListener((sheet, rowNum, values, numbers, dates) -> handler.handle(sheet, rowNum, values), true, false));
+    }
+
+    private int process(SheetListener listener) throws Exception {
+        HSSFRequest request = new HSSFRequest();
+        request.addListenerForAllRecords(listener);
+        NPOIFSFileSystem fs = new NPOIFSFileSystem(file, true);
+        try {
+            new HSSFEventFactory().abortableProcessWorkbookEvents(request, fs.getRoot());
+        } catch (HSSFUserException e) {
+            Throwable reason = e.getReason();
+            if (reason instanceof Exception) throw (Exception) reason;
+            throw e;
+        } finally {
+            fs.close();
+        }
+        if (!listener.found && !listener.allSheets) {
+            throw new IllegalArgumentException("sheet不存在:" + (sheetName == null ? sheetIdx : sheetName));
+        }
+        return listener.count;
+    }
+
+    private class SheetListener extends AbortableHSSFListener {
+
+        private final SheetCellsHandler handler;
+
+        private final boolean allSheets;
+
+        private final boolean keepNumbers;
+
+        private final HSSFListener ignore = new HSSFListener() {
+            @Override
+            public void processRecord(Record record) {
+            }
+        };
+
+        //收集全局记录,用于还原公式文本
+        private final EventWorkbookBuilder.SheetRecordCollectingListener workbookBuilder =
+                new EventWorkbookBuilder.SheetRecordCollectingListener(ignore);
+
+        //收集格式记录,用于判断数值单元格是否为日期格式
+        private final FormatTrackingHSSFListener formats = new FormatTrackingHSSFListener(ignore);
+
+        private final List<BoundSheetRecord> boundSheets = new ArrayList<>();
+
+        private BoundSheetRecord[] orderedSheets;
+
+        private HSSFWorkbook stubWorkbook;
+
+        private SSTRecord sst;
+
+        private final IntFunction<String> sstEntries = i -> sst.getString(i).getString();
+
+        private String target;
+
+        private int sheetPos = -1;
+
+        private int depth;
+
+        private boolean inTarget;
+
+        private boolean found;
+
+        //已定义但还未输出的行(RowRecord)
+        private final Deque<Integer> pendingRows = new ArrayDeque<>();
+
+        private int currentRow = -1;
+
+        private String[] values;
+
+        //当前行中数值单元格的原值与是否为日期格式,不保留原值时为null
+        private double[] numbers;
+
+        private boolean[] dates;
+
+        private int count;
+
+        SheetListener(SheetCellsHandler handler, boolean allSheets, boolean keepNumbers) {
+            this.handler = handler;
+            this.allSheets = allSheets;
+            this.keepNumbers = keepNumbers;
+        }
+
+        @Override
+        public short abortableProcessRecord(Record record) throws HSSFUserException {
+            try {
+                return process(record);
+            } catch (HSSFUserException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new HSSFUserException("处理xls记录失败", e);
+            }
+        }
+
+        private short process(Record record) throws Exception {
+            switch (record.getSid()) {
+                case BOFRecord.sid:
+                    depth++;
+                    //除全局的工作簿BOF外,每个顶层BOF都对应一个BoundSheet,图表、宏表也要计入位置
+                    int type = ((BOFRecord) record).getType();
+                    if (depth == 1 && type != BOFRecord.TYPE_WORKBOOK) {
+                        startSheet(type == BOFRecord.TYPE_WORKSHEET);
+                    }
+                    return CONTINUE;
+                case EOFRecord.sid:
+                    depth--;
+                    if (depth == 0 && inTarget) {
+                        flushUpTo(Integer.MAX_VALUE);
+                        pendingRows.clear();
+                        currentRow = -1;
+                        inTarget = false;
+                        return allSheets ? CONTINUE : ABORT;
+                    }
+                    return CONTINUE;
+                case BoundSheetRecord.sid:
+                    boundSheets.add((BoundSheetRecord) record);
+                    break;
+                case SSTRecord.sid:
+                    sst = (SSTRecord) record;
+                    interner.expectShared(sst.getNumUniqueStrings());
+                    break;
+                default:
+                    break;
+            }
+            if (sheetPos < 0) {
+                workbookBuilder.processRecordInternally(record);
+                if (keepNumbers) formats.processRecordInternally(record);
+                return CONTINUE;
+            }
+            if (!inTarget || depth != 1) {
+                return CONTINUE;
+            }
+            if (record instanceof RowRecord) {
+                int row = ((RowRecord) record).getRowNumber();
+                if (row >= readStartRowPos) pendingRows.addLast(row);
+            } else if (record instanceof CellValueRecordInterface) {
+                CellValueRecordInterface cell = (CellValueRecordInterface) record;
+                if (cell.getRow() < readStartRowPos) return CONTINUE;
+                if (cell.getRow() != currentRow) {
+                    flushUpTo(cell.getRow());
+                    startRow(cell.getRow());
+                }
+                int col = cell.getColumn();
+                if (col < values.length) {
+                    values[col] = record instanceof LabelSSTRecord
+                            ? interner.shared(((LabelSSTRecord) record).getSSTIndex(), sstEntries)
+                            : interner.intern(col, ExcelTools.cleanCellValue(decode(record)));
+                    if (numbers != null && record instanceof NumberRecord) {
+                        numbers[col] = ((NumberRecord) record).getValue();
+                        int format = formats.getFormatIndex(cell);
+                        dates[col] = format >= 0 && DateUtil.isADateFormat(format, formats.getFormatString(format));
+                    }
+                }
+            }
+            return CONTINUE;
+        }
+
+        /**
+         * @param worksheet 是否为工作表;图表、宏表只占位置,不读取
+         */
+        private void startSheet(boolean worksheet) {
+            if (orderedSheets == null) {
+                orderedSheets = BoundSheetRecord.orderByBofPosition(boundSheets);
+                stubWorkbook = workbookBuilder.getStubHSSFWorkbook();
+                boolean byName = !("".equals(sheetName) || null == sheetName);
+                if (byName) {
+                    target = sheetName;
+                } else if (sheetIdx >= 0 && sheetIdx < boundSheets.size()) {
+                    target = boundSheets.get(sheetIdx).getSheetname();
+                }
+            }
+            sheetPos++;
+            inTarget = worksheet && sheetPos < orderedSheets.length
+                    && (allSheets || orderedSheets[sheetPos].getSheetname().equals(target));
+            found |= inTarget;
+        }
+
+        private void startRow(int row) {
+            currentRow = row;
+            values = new String[columnName.length];
+            Arrays.fill(values, "");
+            if (keepNumbers) {
+                numbers = emptyNumbers();
+                dates = new boolean[columnName.length];
+            }
+        }
+
+        private double[] emptyNumbers() {
+            double[] empty = new double[columnName.length];
+            Arrays.fill(empty, Double.NaN);
+            return empty;
+        }
+
+        /**
+         * 输出当前行,以及行号小于row的空行
+         */
+        private void flushUpTo(int row) throws Exception {
+            while (!pendingRows.isEmpty() && pendingRows.peekFirst() < row) {
+                int pending = pendingRows.pollFirst();
+                if (pending < currentRow) {
+                    emptyRow(pending);
+                } else if (pending > currentRow) {
+                    emitCurrent();
+                    emptyRow(pending);
+                }
+            }
+            emitCurrent();
+        }
+
+        private void emptyRow(int row) throws Exception {
+            String[] empty = new String[columnName.length];
+            Arrays.fill(empty, "");
+            if (keepNumbers) {
+                emit(row, empty, emptyNumbers(), new boolean[columnName.length]);
+            } else {
+                emit(row, empty, null, null);
+            }
+        }
+
+        private void emitCurrent() throws Exception {
+            if (values != null) {
+                emit(currentRow, values, numbers, dates);
+                values = null;
+                numbers = null;
+                dates = null;
+            }
+        }
+
+        private void emit(int row, String[] rowValues, double[] rowNumbers, boolean[] rowDates) throws Exception {
+            handler.handle(orderedSheets[sheetPos].getSheetname(), row, rowValues, rowNumbers, rowDates);
+            count++;
+        }
+
+        private String decode(Record record) {
+            if (record instanceof LabelRecord) {
+                return ((LabelRecord) record).getValue();
+            } else if (record instanceof NumberRecord) {
+                //RK/MulRK记录已由事件工厂转换为NumberRecord
+                return ExcelTools.formatNumeric(((NumberRecord) record).getValue());
+            } else if (record instanceof BoolErrRecord) {
+                BoolErrRecord boolErr = (BoolErrRecord) record;
+                return boolErr.isBoolean()
+                        ? String.valueOf(boolErr.getBooleanValue())
+                        : String.valueOf(boolErr.getErrorValue());
+            } else if (record instanceof FormulaRecord) {
+                FormulaRecord formula = (FormulaRecord) record;
+                try {
+                    return HSSFFormulaParser.toFormulaString(stubWorkbook, formula.getParsedExpression());
+                } catch (RuntimeException e) {
+                    //共享公式等无法还原文本时,取缓存值
+                    return ExcelTools.formatNumeric(formula.getValue());
+                }
+            }
+            return "";
+        }
+    }
+}
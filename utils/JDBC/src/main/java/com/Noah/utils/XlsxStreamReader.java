@@ -0,0 +1,384 @@
+package com.Noah.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * 基于OOXML事件模型的xlsx流式读取
+ * <p>
+ * 直接解析sheet的XML与共享字符串表,逐行返回数据,不构建XSSFWorkbook,
+ * 内存占用只与行宽有关,与文件大小无关。单元格取值规则与ExcelTools.getCellValue一致。
+ * 共享字符串按下标只清理一次,其余值按列去重,见{@link ValueInterner}。
+ */
+@Slf4j
+public class XlsxStreamReader implements Iterator<Map<String, Object>>, Closeable {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = newInputFactory();
+
+    private final OPCPackage pkg;
+
+    private final InputStream sheetStream;
+
+    private final XMLStreamReader reader;
+
+    private final String[] columnName;
+
+    private final int readStartRowPos;
+
+    private final ValueInterner interner;
+
+    private final IntFunction<String> sharedEntries;
+
+    //样式表,用于判断数值单元格是否为日期格式;为null时不保留数值单元格的原值
+    private final StylesTable styles;
+
+    //各样式是否为日期格式
+    private final Map<Integer, Boolean> dateStyles = new HashMap<>();
+
+    //最近解析的单元格是否为共享字符串,其值已清理去重
+    private boolean sharedCell;
+
+    //最近解析的单元格为数值时的原值,否则为NaN
+    private double cellNumber;
+
+    //已预读的下一行
+    private String[] nextValues;
+
+    private double[] nextNumbers;
+
+    private boolean[] nextDates;
+
+    //最近一次返回的行中数值单元格的原值与是否为日期格式
+    private double[] numbers;
+
+    private boolean[] dates;
+
+    private int nextRowNum = -1;
+
+    //最近一次返回的行号,从0开始
+    private int rowNum = -1;
+
+    private boolean finished;
+
+    /**
+     * 解析的是上传的文件,禁用DTD与外部实体,防止XXE与实体膨胀
+     */
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * @param pkg             所属的包,close时一并关闭;为null时由调用方负责关闭
+     * @param sharedStrings   共享字符串表
+     * @param sheet           sheet的XML数据
+     * @param columnName      列名
+     * @param readStartRowPos 从第几行开始读取
+     * @param styles          样式表;不为null时保留数值单元格的原值,见{@link #getNumbers()}
+     */
+    XlsxStreamReader(OPCPackage pkg, ReadOnlySharedStringsTable sharedStrings, InputStream sheet, String[] columnName, int readStartRowPos,
+                     StylesTable styles) throws XMLStreamException {
+        this.pkg = pkg;
+        this.styles = styles;
+        this.sheetStream = sheet;
+        this.columnName = columnName;
+        this.readStartRowPos = readStartRowPos;
+        this.reader = XML_INPUT_FACTORY.createXMLStreamReader(sheet);
+        this.interner = new ValueInterner(columnName.length);
+        this.interner.expectShared(sharedStrings.getUniqueCount());
+        this.sharedEntries = sharedStrings::getEntryAt;
+    }
+
+    /**
+     * 打开xlsx文件
+     *
+     * @param file            文件
+     * @param sheetName       读取的sheet名;为空null时,按照sheetIdx读取
+     * @param sheetIdx        sheet页号,从0开始
+     * @param columnName      列名
+     * @param readStartRowPos 从第几行开始读取
+     */
+    static XlsxStreamReader open(File file, String sheetName, int sheetIdx, String[] columnName, int readStartRowPos) throws Exception {
+        return open(file, sheetName, sheetIdx, columnName, readStartRowPos, false);
+    }
+
+    /**
+     * 打开xlsx文件
+     *
+     * @param file            文件
+     * @param sheetName       读取的sheet名;为空null时,按照sheetIdx读取
+     * @param sheetIdx        sheet页号,从0开始
+     * @param columnName      列名
+     * @param readStartRowPos 从第几行开始读取
+     * @param keepNumbers     是否保留数值单元格的原值,见{@link #getNumbers()}
+     */
+    static XlsxStreamReader open(File file, String sheetName, int sheetIdx, String[] columnName, int readStartRowPos,
+                                 boolean keepNumbers) throws Exception {
+        OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ);
+        InputStream sheet = null;
+        try {
+            XSSFReader xssfReader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg);
+            sheet = findSheet(xssfReader, sheetName, sheetIdx);
+            if (sheet == null) {
+                throw new IllegalArgumentException("sheet不存在:" + (sheetName == null ? sheetIdx : sheetName));
+            }
+            StylesTable styles = keepNumbers ? xssfReader.getStylesTable() : null;
+            return new XlsxStreamReader(pkg, sharedStrings, sheet, columnName, readStartRowPos, styles);
+        } catch (Exception e) {
+            if (sheet != null) {
+                sheet.close();
+            }
+            pkg.revert();
+            throw e;
+        }
+    }
+
+    private static InputStream findSheet(XSSFReader xssfReader, String sheetName, int sheetIdx) throws Exception {
+        XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
+        boolean byName = !("".equals(sheetName) || null == sheetName);
+        int idx = 0;
+        while (it.hasNext()) {
+            InputStream in = it.next();
+            if (byName ? sheetName.equals(it.getSheetName()) : idx == sheetIdx) {
+                return in;
+            }
+            in.close();
+            idx++;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextValues == null && !finished) {
+            try {
+                nextValues = readRow();
+            } catch (XMLStreamException e) {
+                throw new IllegalStateException("解析xlsx失败", e);
+            }
+            finished = nextValues == null;
+        }
+        return nextValues != null;
+    }
+
+    @Override
+    public Map<String, Object> next() {
+        return ExcelTools.toRowMap(columnName, nextValues());
+    }
+
+    /**
+     * 读取下一行的原始值,按columnName顺序排列,不构建Map
+     */
+    public String[] nextValues() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String[] values = nextValues;
+        nextValues = null;
+        numbers = nextNumbers;
+        dates = nextDates;
+        rowNum = nextRowNum;
+        return values;
+    }
+
+    /**
+     * 最近一次next()返回的行中数值单元格未经取整的值,其余单元格为NaN;未保留原值时为null
+     */
+    double[] getNumbers() {
+        return numbers;
+    }
+
+    /**
+     * 最近一次next()返回的行中各数值单元格是否为日期格式;未保留原值时为null
+     */
+    boolean[] getDates() {
+        return dates;
+    }
+
+    /**
+     * 最近一次next()返回的行在sheet中的行号,从0开始
+     */
+    public int getRowNum() {
+        return rowNum;
+    }
+
+    ValueInterner getInterner() {
+        return interner;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            log.error("关闭xlsx解析器失败", e);
+        }
+        sheetStream.close();
+        if (pkg != null) {
+            pkg.revert();
+        }
+    }
+
+    /**
+     * 读取下一个需要的行,没有更多行时返回null
+     */
+    private String[] readRow() throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT && "row".equals(reader.getLocalName())) {
+                String r = reader.getAttributeValue(null, "r");
+                int current = r == null ? nextRowNum + 1 : Integer.parseInt(r) - 1;
+                nextRowNum = current;
+                if (current < readStartRowPos) {
+                    skipElement();
+                    continue;
+                }
+                return parseRow();
+            } else if (event == XMLStreamConstants.END_ELEMENT && "sheetData".equals(reader.getLocalName())) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private String[] parseRow() throws XMLStreamException {
+        String[] values = new String[columnName.length];
+        Arrays.fill(values, "");
+        if (styles != null) {
+            nextNumbers = new double[columnName.length];
+            Arrays.fill(nextNumbers, Double.NaN);
+            nextDates = new boolean[columnName.length];
+        }
+        int nextCol = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT && "c".equals(reader.getLocalName())) {
+                String ref = reader.getAttributeValue(null, "r");
+                int col = ref == null ? nextCol : columnIndex(ref);
+                nextCol = col + 1;
+                String style = reader.getAttributeValue(null, "s");
+                String value = parseCell(reader.getAttributeValue(null, "t"));
+                if (col < values.length) {
+                    values[col] = sharedCell ? value : interner.intern(col, ExcelTools.cleanCellValue(value));
+                    if (styles != null && !Double.isNaN(cellNumber)) {
+                        nextNumbers[col] = cellNumber;
+                        nextDates[col] = isDateStyle(style == null ? 0 : Integer.parseInt(style));
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && "row".equals(reader.getLocalName())) {
+                break;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 解析单元格,reader停在c的开始标签上
+     */
+    private String parseCell(String type) throws XMLStreamException {
+        String formula = null;
+        String value = null;
+        StringBuilder inline = null;
+        sharedCell = false;
+        cellNumber = Double.NaN;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if ("f".equals(name)) {
+                    formula = reader.getElementText();
+                } else if ("v".equals(name)) {
+                    value = reader.getElementText();
+                } else if ("t".equals(name)) {
+                    //内联字符串,富文本时有多个t
+                    if (inline == null) inline = new StringBuilder();
+                    inline.append(reader.getElementText());
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && "c".equals(reader.getLocalName())) {
+                break;
+            }
+        }
+        //公式单元格取公式;共享公式的从属单元格没有公式文本,取缓存值
+        if (formula != null && !formula.isEmpty()) {
+            return formula;
+        }
+        if ("inlineStr".equals(type)) {
+            return inline == null ? "" : inline.toString();
+        }
+        if (value == null) {
+            return "";
+        }
+        if ("s".equals(type)) {
+            sharedCell = true;
+            return interner.shared(Integer.parseInt(value.trim()), sharedEntries);
+        } else if ("str".equals(type)) {
+            return value;
+        } else if ("b".equals(type)) {
+            return String.valueOf("1".equals(value.trim()));
+        } else if ("e".equals(type)) {
+            try {
+                return String.valueOf(FormulaError.forString(value).getCode());
+            } catch (IllegalArgumentException e) {
+                return value;
+            }
+        }
+        cellNumber = Double.parseDouble(value);
+        return ExcelTools.formatNumeric(cellNumber);
+    }
+
+    private boolean isDateStyle(int index) {
+        Boolean date = dateStyles.get(index);
+        if (date == null) {
+            XSSFCellStyle style = index < styles.getNumCellStyles() ? styles.getStyleAt(index) : null;
+            date = style != null && DateUtil.isADateFormat(style.getDataFormat(), style.getDataFormatString());
+            dateStyles.put(index, date);
+        }
+        return date;
+    }
+
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * 单元格引用(如AB12)转列号,从0开始
+     */
+    static int columnIndex(String ref) {
+        int col = 0;
+        for (int i = 0; i < ref.length(); i++) {
+            char ch = ref.charAt(i);
+            if (ch < 'A' || ch > 'Z') break;
+            col = col * 26 + (ch - 'A' + 1);
+        }
+        return col - 1;
+    }
+}
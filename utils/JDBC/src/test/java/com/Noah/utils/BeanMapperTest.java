@@ -0,0 +1,104 @@
+package com.Noah.utils;
+
+import lombok.Data;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * 按类型读取为bean时,小数与日期时间取单元格的原值,不受字符串取整的影响
+ */
+public class BeanMapperTest {
+
+    private static final String[] FIELD = {"amount", "price", "time", "date", "code", "day"};
+
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 1, 1, 15, 30);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Data
+    public static class Item {
+
+        private double amount;
+
+        private BigDecimal price;
+
+        private LocalDateTime time;
+
+        private Date date;
+
+        private Integer code;
+
+        private LocalDate day;
+    }
+
+    @Test
+    public void xlsKeepsRawNumbers() throws Exception {
+        assertRoundTrip(write(new HSSFWorkbook(), "input.xls"), "xls");
+    }
+
+    @Test
+    public void xlsxKeepsRawNumbers() throws Exception {
+        assertRoundTrip(write(new XSSFWorkbook(), "input.xlsx"), "xlsx");
+    }
+
+    private static void assertRoundTrip(File file, String ext) {
+        List<Item> items = ExcelTools.readExcel(file, ext, null, 0, FIELD, Item.class);
+        assertNotNull(items);
+        assertEquals(1, items.size());
+        Item item = items.get(0);
+        assertEquals(12.34, item.getAmount(), 0);
+        assertEquals(new BigDecimal("99.95"), item.getPrice());
+        assertEquals(TIME, item.getTime());
+        assertEquals(toDate(TIME), item.getDate());
+        assertEquals(Integer.valueOf(123456), item.getCode());
+        //不是日期格式的数字按yyyyMMdd解析,不当作Excel序列号
+        assertEquals(LocalDate.of(2024, 1, 2), item.getDay());
+    }
+
+    private File write(Workbook workbook, String name) throws Exception {
+        CellStyle dateStyle = workbook.createCellStyle();
+        dateStyle.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd hh:mm"));
+        Row header = workbook.createSheet().createRow(0);
+        for (int i = 0; i < FIELD.length; i++) {
+            header.createCell(i).setCellValue(FIELD[i]);
+        }
+        Row row = workbook.getSheetAt(0).createRow(1);
+        row.createCell(0).setCellValue(12.34);
+        row.createCell(1).setCellValue(99.95);
+        row.createCell(2).setCellValue(toDate(TIME));
+        row.getCell(2).setCellStyle(dateStyle);
+        row.createCell(3).setCellValue(toDate(TIME));
+        row.getCell(3).setCellStyle(dateStyle);
+        row.createCell(4).setCellValue(123456);
+        row.createCell(5).setCellValue(20240102);
+        File file = folder.newFile(name);
+        try (OutputStream out = new FileOutputStream(file)) {
+            workbook.write(out);
+        }
+        return file;
+    }
+
+    private static Date toDate(LocalDateTime time) {
+        return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+    }
+}
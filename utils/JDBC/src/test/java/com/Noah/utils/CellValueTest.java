@@ -0,0 +1,125 @@
+package com.Noah.utils;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+
+import java.text.DecimalFormat;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * getCellValue与formatNumeric的结果须与原实现(每个单元格编译正则、新建DecimalFormat)一致
+ * <p>
+ * 解码性能见JDBC-benchmark模块的GetCellValueBenchmark。
+ */
+public class CellValueTest {
+
+    private static final int ROWS = 20000;
+
+    private static final int COLUMNS = 8;
+
+    @Test
+    public void getCellValueMatchesLegacy() throws Exception {
+        Sheet sheet = new XSSFWorkbook().createSheet();
+        Random random = new Random(42);
+        for (int i = 0; i < ROWS; i++) {
+            Row row = sheet.createRow(i);
+            for (int j = 0; j < COLUMNS; j++) {
+                switch (j) {
+                    case 0:
+                        row.createCell(j).setCellValue(random.nextInt(1000000));
+                        break;
+                    case 1:
+                        row.createCell(j).setCellValue(random.nextDouble() * 10000);
+                        break;
+                    case 2:
+                        row.createCell(j).setCellValue("角色" + random.nextInt(40));
+                        break;
+                    case 3:
+                        //少量带空白的脏数据
+                        row.createCell(j).setCellValue(i % 10 == 0 ? " 张 三\t" + i + "\r\n" : "张三" + i);
+                        break;
+                    case 4:
+                        row.createCell(j).setCellValue(random.nextBoolean());
+                        break;
+                    case 5:
+                        row.createCell(j).setCellFormula("A" + (i + 1) + " + B" + (i + 1));
+                        break;
+                    case 6:
+                        //空白单元格
+                        if (i % 2 == 0) row.createCell(j);
+                        break;
+                    default:
+                        //不创建,getCell返回null
+                        break;
+                }
+            }
+        }
+        for (int i = 0; i < ROWS; i++) {
+            Row row = sheet.getRow(i);
+            for (int j = 0; j < COLUMNS; j++) {
+                Cell cell = row.getCell(j);
+                assertEquals("row " + i + " col " + j, legacyCellValue(cell), ExcelTools.getCellValue(cell));
+            }
+        }
+    }
+
+    @Test
+    public void formatNumericMatchesDecimalFormat() {
+        DecimalFormat format = new DecimalFormat("0");
+        double[] edge = {0d, -0d, 0.5, 1.5, 2.5, -0.4, -0.5, -2.5, 1e15 + 0.5, 9007199254740993d, 1e20, -1e300,
+                Double.MAX_VALUE, Double.MIN_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (double v : edge) {
+            assertEquals(String.valueOf(v), format.format(v), ExcelTools.formatNumeric(v));
+        }
+        Random random = new Random(7);
+        for (int i = 0; i < 200000; i++) {
+            double v = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20));
+            assertEquals(String.valueOf(v), format.format(v), ExcelTools.formatNumeric(v));
+            v = random.nextInt(2000) / 2d - 500;
+            assertEquals(String.valueOf(v), format.format(v), ExcelTools.formatNumeric(v));
+        }
+    }
+
+    /**
+     * 优化前的getCellValue实现
+     */
+    private static String legacyCellValue(Cell cell) {
+        Object result = "";
+        if (cell != null) {
+            switch (cell.getCellType()) {
+                case Cell.CELL_TYPE_STRING:
+                    result = cell.getStringCellValue();
+                    break;
+                case Cell.CELL_TYPE_NUMERIC:
+                    result = new DecimalFormat("0").format(cell.getNumericCellValue());
+                    break;
+                case Cell.CELL_TYPE_BOOLEAN:
+                    result = cell.getBooleanCellValue();
+                    break;
+                case Cell.CELL_TYPE_FORMULA:
+                    result = cell.getCellFormula();
+                    break;
+                case Cell.CELL_TYPE_ERROR:
+                    result = cell.getErrorCellValue();
+                    break;
+                case Cell.CELL_TYPE_BLANK:
+                    break;
+                default:
+                    result = cell.toString();
+                    break;
+            }
+        }
+        String reString = result.toString();
+        Pattern p = Pattern.compile("\\s*|\t|\r|\n");
+        Matcher m = p.matcher(reString);
+        reString = m.replaceAll("").trim();
+        return reString;
+    }
+}
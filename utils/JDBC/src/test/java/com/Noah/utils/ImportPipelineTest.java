@@ -0,0 +1,165 @@
+package com.Noah.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * 并行导入的检查点:整块行级失败后检查点照常推进,中途失败后从检查点继续时不重复插入;
+ * 大部分行被跳过时检查点同样按块推进
+ */
+public class ImportPipelineTest {
+
+    private static final String URL = "jdbc:h2:mem:import;DB_CLOSE_DELAY=-1";
+
+    private static final String[] COLUMN = {"id", "name"};
+
+    private static final int ROWS = 1000;
+
+    private static final int COMMIT_SIZE = 100;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ConnectionPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = new ConnectionPool(URL, "sa", "");
+        try (Connection conn = pool.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("create table t (id int primary key, name varchar(20) not null)");
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Connection conn = pool.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("drop table t");
+        }
+        pool.close();
+    }
+
+    @Test
+    public void rowLevelFailuresDoNotStopCheckpoint() throws Exception {
+        File file = writeInput();
+        File checkpointFile = new File(folder.getRoot(), "input.checkpoint");
+        ImportPipeline pipeline = new ImportPipeline(pool, "insert into t (id, name) values (?, ?)",
+                10, COMMIT_SIZE, ImportPipeline.DEFAULT_QUEUE_CAPACITY, 2);
+        pipeline.setCheckpoint(checkpointFile);
+
+        //第101~200行name为空,整块都因非空约束在行级失败;第800行中止导入
+        ImportPipeline.PipelineResult result = pipeline.run(file, "xlsx", null, 0, COLUMN,
+                processor(800), COLUMN, COLUMN, new ByteArrayOutputStream());
+        assertNull(result);
+        ImportCheckpoint checkpoint = ImportCheckpoint.load(checkpointFile);
+        assertNotNull(checkpoint);
+        //第701~800行所在的块未提交,之前的块都已提交
+        assertEquals(700, checkpoint.getLastRow());
+        assertEquals(600, count());
+
+        result = pipeline.run(file, "xlsx", null, 0, COLUMN,
+                processor(-1), COLUMN, COLUMN, new ByteArrayOutputStream());
+        assertNotNull(result);
+        assertEquals(700, result.getResumedAfterRow());
+        assertEquals(ROWS - 700, result.getSuccessCount());
+        //检查点停在第100行时,第201~700行会再次插入并因主键冲突失败
+        assertEquals(0, result.getFailureCount());
+        assertEquals(ROWS - COMMIT_SIZE, count());
+        assertFalse(checkpointFile.exists());
+    }
+
+    @Test
+    public void skippedRowsStillCutChunks() throws Exception {
+        File file = writeInput();
+        File checkpointFile = new File(folder.getRoot(), "input.checkpoint");
+        ImportPipeline pipeline = new ImportPipeline(pool, "insert into t (id, name) values (?, ?)",
+                10, COMMIT_SIZE, ImportPipeline.DEFAULT_QUEUE_CAPACITY, 2);
+        pipeline.setCheckpoint(checkpointFile);
+
+        //只插入第250、500、750、1000行,第800行中止导入
+        ImportPipeline.PipelineResult result = pipeline.run(file, "xlsx", null, 0, COLUMN,
+                skippingProcessor(800), COLUMN, COLUMN, new ByteArrayOutputStream());
+        assertNull(result);
+        ImportCheckpoint checkpoint = ImportCheckpoint.load(checkpointFile);
+        assertNotNull(checkpoint);
+        assertEquals(700, checkpoint.getLastRow());
+        assertEquals(2, count());
+
+        result = pipeline.run(file, "xlsx", null, 0, COLUMN,
+                skippingProcessor(-1), COLUMN, COLUMN, new ByteArrayOutputStream());
+        assertNotNull(result);
+        assertEquals(700, result.getResumedAfterRow());
+        assertEquals(2, result.getSuccessCount());
+        assertEquals(ROWS - 700 - 2, result.getSkipCount());
+        assertEquals(0, result.getFailureCount());
+        assertEquals(4, count());
+        assertFalse(checkpointFile.exists());
+    }
+
+    private File writeInput() throws Exception {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 1; i <= ROWS; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", String.valueOf(i));
+            row.put("name", i > 100 && i <= 200 ? "" : "user" + i);
+            rows.add(row);
+        }
+        File file = folder.newFile("input.xlsx");
+        try (OutputStream out = new FileOutputStream(file)) {
+            assertTrue(ExcelTools.writeXSSFWookbook(rows.iterator(), COLUMN, COLUMN, null, out));
+        }
+        return file;
+    }
+
+    /**
+     * @param failAt 处理到该行时抛出异常,为-1时不抛出
+     */
+    private static ImportPipeline.RowProcessor processor(final int failAt) {
+        return (rowNum, row) -> {
+            if (rowNum == failAt) {
+                throw new IllegalStateException("模拟中途失败");
+            }
+            String name = row.get("name").toString();
+            return new Object[]{Integer.valueOf(row.get("id").toString()), name.isEmpty() ? null : name};
+        };
+    }
+
+    /**
+     * 只插入id为250倍数的行,其余行跳过
+     *
+     * @param failAt 处理到该行时抛出异常,为-1时不抛出
+     */
+    private static ImportPipeline.RowProcessor skippingProcessor(final int failAt) {
+        return (rowNum, row) -> {
+            if (rowNum == failAt) {
+                throw new IllegalStateException("模拟中途失败");
+            }
+            int id = Integer.parseInt(row.get("id").toString());
+            return id % 250 == 0 ? new Object[]{id, row.get("name")} : null;
+        };
+    }
+
+    private int count() throws Exception {
+        try (Connection conn = pool.getConnection(); Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("select count(*) from t")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}